@@ -0,0 +1,186 @@
+package com.supabase.qnasession.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Gemini REST API speaking the generateContent and batchEmbedContents
+ * contracts used by GeminiClient and GeminiEmbeddingProvider, with configurable latency,
+ * error rate and 429 rate.
+ */
+@Component
+@Profile("loadtest")
+@Slf4j
+@RequiredArgsConstructor
+public class GeminiStubServer {
+
+    // Includes the WorkloadGenerator template words, so the topic is the subject the template
+    // was filled with rather than "best" or "any"
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "the", "what", "how", "is", "are", "do", "does", "can", "to", "of", "about",
+        "explain", "please", "why", "when", "in", "on", "for", "with", "and", "or", "i", "you",
+        "best", "way", "scale", "any", "gotchas", "work", "production", "beginners", "vs", "alternatives"
+    );
+
+    private final LoadTestConfig loadTestConfig;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        int port = loadTestConfig.getGemini().getPort();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newFixedThreadPool(32);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("Gemini stub listening on http://127.0.0.1:{}", port);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            LoadTestConfig.GeminiStub settings = loadTestConfig.getGemini();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long jitter = settings.getLatencyJitterMs() > 0 ? random.nextLong(settings.getLatencyJitterMs()) : 0;
+            Thread.sleep(settings.getLatencyMs() + jitter);
+
+            if (random.nextDouble() < settings.getRateLimitRate()) {
+                rateLimited.incrementAndGet();
+                respond(exchange, 429, "{\"error\":{\"code\":429,\"status\":\"RESOURCE_EXHAUSTED\"}}");
+                return;
+            }
+            if (random.nextDouble() < settings.getErrorRate()) {
+                failed.incrementAndGet();
+                respond(exchange, 500, "{\"error\":{\"code\":500,\"status\":\"INTERNAL\"}}");
+                return;
+            }
+
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith(":generateContent")) {
+                respond(exchange, 200, generateContent(body));
+            } else if (path.endsWith(":batchEmbedContents")) {
+                respond(exchange, 200, batchEmbedContents(body));
+            } else {
+                respond(exchange, 404, "{\"error\":{\"code\":404,\"status\":\"NOT_FOUND\"}}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Gemini stub failed to handle request", e);
+        }
+    }
+
+    private String generateContent(JsonNode body) throws IOException {
+        String prompt = body.path("contents").path(0).path("parts").path(0).path("text").asText("");
+        List<Map<String, String>> assignments = new ArrayList<>();
+        String roomId = null;
+        for (String line : prompt.split("\n")) {
+            if (line.startsWith("Room: ")) {
+                roomId = line.substring("Room: ".length()).trim();
+            } else if (line.startsWith("- id: ")) {
+                int contentAt = line.indexOf(" content: ");
+                if (contentAt < 0) {
+                    continue;
+                }
+                Map<String, String> assignment = new LinkedHashMap<>();
+                if (roomId != null) {
+                    assignment.put("room_id", roomId);
+                }
+                assignment.put("message_id", line.substring("- id: ".length(), contentAt).trim());
+                assignment.put("topic", topicOf(line.substring(contentAt + " content: ".length())));
+                assignments.add(assignment);
+            }
+        }
+
+        String text = objectMapper.writeValueAsString(assignments);
+        Map<String, Object> part = Map.of("text", text);
+        Map<String, Object> content = Map.of("role", "model", "parts", List.of(part));
+        return objectMapper.writeValueAsString(Map.of("candidates", List.of(Map.of("content", content))));
+    }
+
+    private String batchEmbedContents(JsonNode body) throws IOException {
+        List<Map<String, Object>> embeddings = new ArrayList<>();
+        for (JsonNode request : body.path("requests")) {
+            int dimensions = request.path("outputDimensionality").asInt(768);
+            String text = request.path("content").path("parts").path(0).path("text").asText("");
+            float[] vector = new float[dimensions];
+            vector[Math.floorMod(topicOf(text).hashCode(), dimensions)] = 1f;
+            for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!token.isEmpty()) {
+                    vector[Math.floorMod(token.hashCode(), dimensions)] += 0.25f;
+                }
+            }
+            embeddings.add(Map.of("values", vector));
+        }
+        return objectMapper.writeValueAsString(Map.of("embeddings", embeddings));
+    }
+
+    private String topicOf(String content) {
+        for (String token : content.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                return token;
+            }
+        }
+        return "general";
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
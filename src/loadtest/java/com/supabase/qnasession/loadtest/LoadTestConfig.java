@@ -0,0 +1,51 @@
+package com.supabase.qnasession.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+@Profile("loadtest")
+@ConfigurationProperties(prefix = "loadtest")
+@Getter
+@Setter
+public class LoadTestConfig {
+
+    private int rooms = 50;
+    private int messagesPerSecond = 100;
+    private int durationSeconds = 120;
+    // How long to keep measuring after the generator stops so the last messages can cluster
+    private int drainSeconds = 60;
+    private int voteBurstIntervalSeconds = 10;
+    private int voteBurstSize = 200;
+    private Datasource datasource = new Datasource();
+    private GeminiStub gemini = new GeminiStub();
+    private RealtimeStub realtime = new RealtimeStub();
+
+    @Getter
+    @Setter
+    public static class Datasource {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class GeminiStub {
+        private int port = 18080;
+        private long latencyMs = 800;
+        private long latencyJitterMs = 400;
+        private double errorRate = 0.01;
+        private double rateLimitRate = 0.02;
+    }
+
+    @Getter
+    @Setter
+    public static class RealtimeStub {
+        private int port = 18081;
+    }
+}
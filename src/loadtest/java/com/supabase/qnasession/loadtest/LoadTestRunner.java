@@ -0,0 +1,74 @@
+package com.supabase.qnasession.loadtest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Drives a load test run end to end when the "loadtest" profile is active:
+ * generate traffic for the configured duration, let the backlog drain, report
+ * throughput and time-to-cluster percentiles, then exit.
+ */
+@Component
+@Profile("loadtest")
+@Slf4j
+@RequiredArgsConstructor
+public class LoadTestRunner implements ApplicationRunner {
+
+    private final LoadTestConfig loadTestConfig;
+    private final WorkloadGenerator workloadGenerator;
+    private final GeminiStubServer geminiStubServer;
+    private final RealtimeStubServer realtimeStubServer;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long startedAt = System.currentTimeMillis();
+        workloadGenerator.start();
+        Thread.sleep(loadTestConfig.getDurationSeconds() * 1000L);
+        workloadGenerator.stopEmitting();
+
+        long drainDeadline = System.currentTimeMillis() + loadTestConfig.getDrainSeconds() * 1000L;
+        while (workloadGenerator.getOutstanding() > 0 && System.currentTimeMillis() < drainDeadline) {
+            Thread.sleep(1000);
+        }
+        workloadGenerator.shutdown();
+        report((System.currentTimeMillis() - startedAt) / 1000.0);
+
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private void report(double elapsedSeconds) {
+        List<Long> latencies = workloadGenerator.getLatenciesMs();
+        Collections.sort(latencies);
+        log.info("=== Load test report ===");
+        log.info("Rooms: {}, target rate: {} msgs/sec, elapsed: {} s",
+            loadTestConfig.getRooms(), loadTestConfig.getMessagesPerSecond(), String.format("%.1f", elapsedSeconds));
+        log.info("Inserted: {}, clustered: {}, never clustered: {}, votes: {}",
+            workloadGenerator.getInserted(), latencies.size(), workloadGenerator.getOutstanding(),
+            workloadGenerator.getVotes());
+        log.info("Clustering throughput: {} msgs/sec", String.format("%.1f", latencies.size() / elapsedSeconds));
+        log.info("Time to cluster (ms): p50={} p90={} p99={} max={}",
+            percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+            latencies.isEmpty() ? 0 : latencies.get(latencies.size() - 1));
+        log.info("Gemini stub: {} requests, {} rate limited, {} failed",
+            geminiStubServer.getRequests(), geminiStubServer.getRateLimited(), geminiStubServer.getFailed());
+        log.info("Realtime stub: {} frames sent", realtimeStubServer.getFramesSent());
+    }
+
+    private long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -0,0 +1,159 @@
+package com.supabase.qnasession.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local Phoenix-protocol websocket server emitting the postgres_changes frames that
+ * SupabaseRealtimeService consumes. Joins and heartbeats are acknowledged with phx_reply.
+ * Event types and eq column filters from the join payload are honoured like the real server.
+ */
+@Component
+@Profile("loadtest")
+@Slf4j
+public class RealtimeStubServer extends WebSocketServer {
+
+    private final ObjectMapper objectMapper;
+    private final Map<WebSocket, Set<Binding>> bindings = new ConcurrentHashMap<>();
+    private final AtomicLong framesSent = new AtomicLong();
+
+    private record Binding(String topic, String table, String event, String filterColumn, String filterValue) {
+
+        boolean matches(String table, String type, Map<String, Object> row) {
+            if (!this.table.equals(table) || !("*".equals(event) || event.equalsIgnoreCase(type))) {
+                return false;
+            }
+            return filterColumn == null || (row != null && filterValue.equals(String.valueOf(row.get(filterColumn))));
+        }
+    }
+
+    public RealtimeStubServer(LoadTestConfig loadTestConfig, ObjectMapper objectMapper) {
+        super(new InetSocketAddress("127.0.0.1", loadTestConfig.getRealtime().getPort()));
+        this.objectMapper = objectMapper;
+        setReuseAddr(true);
+    }
+
+    @PostConstruct
+    public void startServer() {
+        start();
+    }
+
+    @PreDestroy
+    public void stopServer() throws InterruptedException {
+        stop(1000);
+    }
+
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    public void broadcast(String table, String type, Map<String, Object> record, Map<String, Object> oldRecord) {
+        Map<String, Object> row = "DELETE".equals(type) ? oldRecord : record;
+        try {
+            Map<String, Object> data = Map.of(
+                "schema", "public",
+                "table", table,
+                "type", type,
+                "record", record == null ? Map.of() : record,
+                "old_record", oldRecord == null ? Map.of() : oldRecord,
+                "commit_timestamp", Instant.now().toString()
+            );
+            for (Map.Entry<WebSocket, Set<Binding>> entry : bindings.entrySet()) {
+                if (!entry.getKey().isOpen()) {
+                    continue;
+                }
+                Set<String> topics = new HashSet<>();
+                for (Binding binding : entry.getValue()) {
+                    if (binding.matches(table, type, row)) {
+                        topics.add(binding.topic());
+                    }
+                }
+                for (String topic : topics) {
+                    entry.getKey().send(objectMapper.writeValueAsString(Map.of(
+                        "topic", topic,
+                        "event", "postgres_changes",
+                        "payload", Map.of("data", data),
+                        "ref", ""
+                    )));
+                    framesSent.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Realtime stub failed to broadcast {} on {}", type, table, e);
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        bindings.put(conn, ConcurrentHashMap.newKeySet());
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        bindings.remove(conn);
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        try {
+            JsonNode root = objectMapper.readTree(message);
+            String event = root.path("event").asText();
+            String topic = root.path("topic").asText();
+            String ref = root.path("ref").asText();
+            if ("phx_join".equals(event)) {
+                bind(conn, topic, root.path("payload").path("config").path("postgres_changes"));
+            } else if (!"heartbeat".equals(event)) {
+                return;
+            }
+            conn.send(objectMapper.writeValueAsString(Map.of(
+                "topic", topic,
+                "event", "phx_reply",
+                "payload", Map.of("status", "ok", "response", Map.of()),
+                "ref", ref
+            )));
+        } catch (Exception e) {
+            log.warn("Realtime stub failed to handle frame: {}", message, e);
+        }
+    }
+
+    private void bind(WebSocket conn, String topic, JsonNode changes) {
+        Set<Binding> joined = bindings.computeIfAbsent(conn, key -> ConcurrentHashMap.newKeySet());
+        if (!changes.isArray() || changes.isEmpty()) {
+            // Legacy join without config: realtime:public:<table> receives every change
+            joined.add(new Binding(topic, topic.substring(topic.lastIndexOf(':') + 1), "*", null, null));
+            return;
+        }
+        for (JsonNode change : changes) {
+            String filter = change.path("filter").asText("");
+            int eq = filter.indexOf("=eq.");
+            joined.add(new Binding(topic, change.path("table").asText(), change.path("event").asText("*"),
+                eq < 0 ? null : filter.substring(0, eq), eq < 0 ? null : filter.substring(eq + 4)));
+        }
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        log.warn("Realtime stub error", ex);
+    }
+
+    @Override
+    public void onStart() {
+        log.info("Realtime stub listening on ws://{}", getAddress());
+    }
+}
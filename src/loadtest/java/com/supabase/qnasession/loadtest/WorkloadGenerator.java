@@ -0,0 +1,217 @@
+package com.supabase.qnasession.loadtest;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synthetic Q&A traffic: N rooms receiving M messages per second in total plus periodic vote
+ * bursts, written to the database and echoed through the realtime stub. Tracks how long each
+ * message takes to receive a cluster. Writes and polls go through a connection pool of its own
+ * ({@code loadtest.datasource}), so the generator does not compete with the service's pool.
+ */
+@Component
+@Profile("loadtest")
+@Slf4j
+@RequiredArgsConstructor
+public class WorkloadGenerator {
+
+    private static final int TICKS_PER_SECOND = 10;
+    private static final List<String> TOPICS = List.of(
+        "kubernetes", "jwt", "postgres", "embeddings", "caching", "kafka", "graphql", "oauth",
+        "rust", "webassembly", "latency", "sharding", "transformers", "observability", "terraform"
+    );
+    private static final List<String> TEMPLATES = List.of(
+        "How does %s work in production?", "What is the best way to scale %s?",
+        "Can you explain %s for beginners?", "Any gotchas with %s?", "%s vs the alternatives?"
+    );
+    private static final List<String> JUNK = List.of("hi", "+1", "👏👏", "great talk", "lol");
+
+    private final LoadTestConfig loadTestConfig;
+    private final RealtimeStubServer realtimeStubServer;
+
+    private final Map<UUID, Long> outstanding = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> latenciesMs = new ConcurrentLinkedQueue<>();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong votes = new AtomicLong();
+    private final List<String> roomIds = new ArrayList<>();
+    private ScheduledExecutorService executor;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private double carry;
+
+    public void start() {
+        LoadTestConfig.Datasource settings = loadTestConfig.getDatasource();
+        HikariConfig hikari = new HikariConfig();
+        hikari.setJdbcUrl(settings.getUrl());
+        hikari.setUsername(settings.getUsername());
+        hikari.setPassword(settings.getPassword());
+        hikari.setMaximumPoolSize(settings.getMaximumPoolSize());
+        hikari.setPoolName("loadtest-generator");
+        dataSource = new HikariDataSource(hikari);
+        jdbc = new JdbcTemplate(dataSource);
+
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        for (int i = 0; i < loadTestConfig.getRooms(); i++) {
+            String roomId = "loadtest-" + runId + "-" + i;
+            jdbc.update("insert into rooms (id, name, created_at) values (?, ?, ?)",
+                roomId, "Load test room " + i, Timestamp.from(Instant.now()));
+            roomIds.add(roomId);
+        }
+
+        executor = Executors.newScheduledThreadPool(3);
+        executor.scheduleAtFixedRate(this::emitTick, 0, 1000 / TICKS_PER_SECOND, TimeUnit.MILLISECONDS);
+        executor.scheduleAtFixedRate(this::pollClustered, 500, 500, TimeUnit.MILLISECONDS);
+        int burstInterval = loadTestConfig.getVoteBurstIntervalSeconds();
+        if (burstInterval > 0) {
+            executor.scheduleAtFixedRate(this::voteBurst, burstInterval, burstInterval, TimeUnit.SECONDS);
+        }
+        log.info("Load generator started: {} rooms, {} msgs/sec", roomIds.size(), loadTestConfig.getMessagesPerSecond());
+    }
+
+    public void stopEmitting() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        // Keep measuring time-to-cluster for messages already written
+        executor = Executors.newSingleThreadScheduledExecutor();
+        executor.scheduleAtFixedRate(this::pollClustered, 0, 500, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    public long getInserted() {
+        return inserted.get();
+    }
+
+    public long getVotes() {
+        return votes.get();
+    }
+
+    public int getOutstanding() {
+        return outstanding.size();
+    }
+
+    public List<Long> getLatenciesMs() {
+        return new ArrayList<>(latenciesMs);
+    }
+
+    private void emitTick() {
+        try {
+            carry += (double) loadTestConfig.getMessagesPerSecond() / TICKS_PER_SECOND;
+            int count = (int) carry;
+            carry -= count;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < count; i++) {
+                String roomId = roomIds.get(random.nextInt(roomIds.size()));
+                UUID id = UUID.randomUUID();
+                UUID userId = UUID.randomUUID();
+                String userName = "user-" + random.nextInt(10_000);
+                String content = randomContent(random);
+                Instant createdAt = Instant.now();
+                jdbc.update("insert into messages (id, room_id, user_id, user_name, content, created_at, votes) "
+                    + "values (?, ?, ?, ?, ?, ?, 0)", id, roomId, userId, userName, content, Timestamp.from(createdAt));
+                outstanding.put(id, System.nanoTime());
+                inserted.incrementAndGet();
+
+                Map<String, Object> record = new HashMap<>();
+                record.put("id", id.toString());
+                record.put("room_id", roomId);
+                record.put("user_id", userId.toString());
+                record.put("user_name", userName);
+                record.put("content", content);
+                record.put("created_at", createdAt.toString());
+                record.put("votes", 0);
+                realtimeStubServer.broadcast("messages", "INSERT", record, null);
+            }
+        } catch (Exception e) {
+            log.warn("Load generator failed to emit messages", e);
+        }
+    }
+
+    private void voteBurst() {
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String roomId = roomIds.get(random.nextInt(roomIds.size()));
+            List<UUID> clusters = jdbc.queryForList("select id from clusters where room_id = ?", UUID.class, roomId);
+            if (clusters.isEmpty()) {
+                return;
+            }
+            UUID clusterId = clusters.get(random.nextInt(clusters.size()));
+            int burstSize = loadTestConfig.getVoteBurstSize();
+            Timestamp now = Timestamp.from(Instant.now());
+            List<Object[]> burst = new ArrayList<>(burstSize);
+            for (int i = 0; i < burstSize; i++) {
+                burst.add(new Object[]{UUID.randomUUID(), clusterId, UUID.randomUUID(), now});
+            }
+            jdbc.batchUpdate("insert into cluster_votes (id, cluster_id, user_id, created_at) values (?, ?, ?, ?)", burst);
+            Integer total = jdbc.queryForObject("update clusters set votes = coalesce(votes, 0) + ?, updated_at = ? "
+                + "where id = ? returning votes", Integer.class, burstSize, now, clusterId);
+            votes.addAndGet(burstSize);
+
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", clusterId.toString());
+            record.put("room_id", roomId);
+            record.put("votes", total);
+            realtimeStubServer.broadcast("clusters", "UPDATE", record, null);
+        } catch (Exception e) {
+            log.warn("Load generator failed to emit vote burst", e);
+        }
+    }
+
+    private void pollClustered() {
+        try {
+            List<UUID> ids = new ArrayList<>(outstanding.keySet());
+            for (int start = 0; start < ids.size(); start += 1000) {
+                List<UUID> batch = ids.subList(start, Math.min(ids.size(), start + 1000));
+                long now = System.nanoTime();
+                String[] batchIds = batch.stream().map(UUID::toString).toArray(String[]::new);
+                List<UUID> clustered = jdbc.queryForList(
+                    "select id from messages where id = any(?::uuid[]) and cluster_id is not null",
+                    UUID.class, (Object) batchIds);
+                for (UUID id : clustered) {
+                    Long insertedAt = outstanding.remove(id);
+                    if (insertedAt != null) {
+                        latenciesMs.add(TimeUnit.NANOSECONDS.toMillis(now - insertedAt));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Load generator failed to poll clustered messages", e);
+        }
+    }
+
+    private String randomContent(ThreadLocalRandom random) {
+        if (random.nextInt(10) == 0) {
+            return JUNK.get(random.nextInt(JUNK.size()));
+        }
+        String template = TEMPLATES.get(random.nextInt(TEMPLATES.size()));
+        return String.format(template, TOPICS.get(random.nextInt(TOPICS.size())));
+    }
+}
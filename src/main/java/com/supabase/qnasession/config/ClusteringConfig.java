@@ -0,0 +1,169 @@
+package com.supabase.qnasession.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "clustering")
+@Getter
+@Setter
+public class ClusteringConfig {
+
+    // Rooms are rescanned for unclustered messages at least this often even without realtime activity
+    private long fullScanIntervalMs = 300000;
+    private Classifier classifier = new Classifier();
+    private Packing packing = new Packing();
+    private Fairness fairness = new Fairness();
+    private Journal journal = new Journal();
+    private Snapshot snapshot = new Snapshot();
+    private Backfill backfill = new Backfill();
+    private Compaction compaction = new Compaction();
+    private Canonical canonical = new Canonical();
+    private PreFilter preFilter = new PreFilter();
+    private ReadModel readModel = new ReadModel();
+    private Lifecycle lifecycle = new Lifecycle();
+
+    @Getter
+    @Setter
+    public static class Classifier {
+        private boolean enabled = true;
+        // Minimum share (0-1) of the best cluster's label terms found in the message
+        private double minScore = 0.5;
+        // Best share must exceed the runner-up's, or min-score when there is none, by this much
+        private double margin = 0.25;
+    }
+
+    @Getter
+    @Setter
+    public static class Packing {
+        private boolean enabled = true;
+        // Rooms with at most this many unlabelled messages share a request with other small rooms
+        private int smallRoomMaxMessages = 5;
+        // Estimated prompt size (chars / 4) at which a packed request is closed
+        private int maxPromptTokens = 6000;
+    }
+
+    @Getter
+    @Setter
+    public static class Fairness {
+        private boolean enabled = true;
+        // Upper bound on pending messages loaded per room per cycle
+        private int maxPendingPerRoom = 500;
+        // Estimated prompt tokens handed to the LLM per cycle across all rooms
+        private int maxTokensPerCycle = 20000;
+        // Per-room token bucket refilled continuously at this rate
+        private int roomTokensPerMinute = 8000;
+        // Rooms with a message newer than this get their weight multiplied by activeBoost
+        private long activeWindowMs = 60000;
+        private double activeBoost = 2.0;
+        // Explicit per-room weights; rooms not listed weigh 1.0
+        private Map<String, Double> roomWeights = new HashMap<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Journal {
+        private boolean enabled = true;
+        private String path = "data/clustering-journal.bin";
+        private int capacityBytes = 8 * 1024 * 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+        private boolean enabled = true;
+        private String path = "data/room-state.snapshot";
+    }
+
+    @Getter
+    @Setter
+    public static class Backfill {
+        // Rooms re-clustered concurrently
+        private int parallelism = 4;
+        // Shared ceiling on Gemini requests issued by re-cluster jobs; 0 or less disables it
+        private double maxRequestsPerSecond = 2.0;
+        // Messages labelled per Gemini request
+        private int chunkSize = 200;
+        // Extra attempts for a chunk Gemini returned no topics for, with doubling backoff
+        private int labelRetries = 4;
+        private long retryBackoffMs = 2000;
+        private long maxRetryBackoffMs = 30000;
+        private String checkpointDir = "data/backfill";
+        private boolean resumeOnStartup = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Compaction {
+        private boolean enabled = true;
+        private long intervalMs = 60000;
+        // Bounded work per run; remaining rooms are picked up round-robin on later runs
+        private int roomsPerRun = 20;
+        private int maxMergesPerRun = 50;
+        // Rooms with more clusters only compare their largest clusters
+        private int maxClustersPerRoom = 200;
+        // Recent member messages sampled per cluster for content similarity
+        private int sampleMessages = 20;
+        private double titleWeight = 0.6;
+        private double mergeThreshold = 0.6;
+    }
+
+    @Getter
+    @Setter
+    public static class Canonical {
+        // Phrase -> replacement applied after lower-casing, e.g. "large language models" -> "llm"
+        private Map<String, String> synonyms = new HashMap<>();
+        // Raw topic -> key entries memoised per room before the memo is reset
+        private int memoSizePerRoom = 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class PreFilter {
+        private boolean enabled = true;
+        // Shared cluster that low-value messages are attached to without an LLM call; kept
+        // apart from "general", which the LLM uses for real but unclear questions
+        private String lowValueTopic = "low-value";
+        // Messages with fewer letters/digits than this are low-value unless they hold an
+        // acronym or a letter/digit token such as "AI" or "k8s"
+        private int minLength = 3;
+        private List<String> acknowledgements = List.of(
+            "hi", "hello", "hey", "thanks", "thank you", "thx", "ty", "lol", "ok", "okay", "nice",
+            "cool", "wow", "same", "agreed", "great talk", "nice talk", "awesome", "yes", "no"
+        );
+        // A user repeating the same text within this window is treated as spam
+        private long repeatWindowMs = 600000;
+        // Messages beyond this per user per minute are treated as spam
+        private int maxMessagesPerUserPerMinute = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class ReadModel {
+        // Removed clusters remembered per room for delta responses; older deltas fall back to a full list
+        private int maxTombstonesPerRoom = 1000;
+        private int defaultPageSize = 100;
+        private int maxPageSize = 500;
+        // Unknown room ids are answered from memory for this long instead of querying rooms again
+        private long missingRoomTtlMs = 30000;
+        private int maxMissingRooms = 10000;
+        // Cached rooms are reloaded at least this often even without a change event; 0 disables
+        private long maxStalenessMs = 60000;
+    }
+
+    @Getter
+    @Setter
+    public static class Lifecycle {
+        // Rooms without realtime activity for this long are idle and no longer scheduled
+        private long idleAfterMs = 1800000;
+        private long sweepIntervalMs = 60000;
+        // Idle rooms are evicted, least recently active first, while per-room state exceeds this
+        private long memoryBudgetBytes = 256L * 1024 * 1024;
+    }
+}
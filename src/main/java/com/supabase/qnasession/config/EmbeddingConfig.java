@@ -0,0 +1,24 @@
+package com.supabase.qnasession.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "embedding")
+@Getter
+@Setter
+public class EmbeddingConfig {
+
+    private boolean enabled = true;
+    // "gemini" calls the Gemini embedding API, "local" uses the deterministic hashing provider
+    private String provider = "gemini";
+    private String model = "gemini-embedding-001";
+    private int dimensions = 768;
+    // Minimum cosine similarity for a message to join an existing cluster centroid
+    private double similarityThreshold = 0.82;
+    // A room's index is seeded on first use from this many recent messages per cluster
+    private int seedSamplePerCluster = 5;
+    private int seedMaxClusters = 200;
+}
@@ -0,0 +1,17 @@
+package com.supabase.qnasession.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "export")
+@Getter
+@Setter
+public class ExportConfig {
+
+    // Each running export holds one pooled connection; keep this well under the Hikari pool size
+    private int maxConcurrent = 2;
+    private int fetchSize = 1000;
+}
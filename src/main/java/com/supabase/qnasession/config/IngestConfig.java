@@ -0,0 +1,20 @@
+package com.supabase.qnasession.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "ingest")
+@Getter
+@Setter
+public class IngestConfig {
+
+    private int maxBatchSize = 100_000;
+    private int maxContentLength = 4000;
+    // Batches at least this large are written with COPY; smaller ones with multi-row INSERT
+    private int copyThreshold = 1000;
+    // Each ingest holds a pooled connection while the body streams in
+    private int maxConcurrent = 2;
+}
@@ -7,7 +7,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "supabase")
@@ -24,11 +26,30 @@ public class SupabaseConfig {
     public static class Realtime {
         private boolean enabled = true;
         private List<String> tables = List.of();
+        // Server-side event and column filters per table; tables without an entry get every change
+        private Map<String, Subscription> subscriptions = new HashMap<>();
+        // Rooms given their own channel on tables marked per-room
+        private List<String> rooms = List.of();
+        // Drop the echo of cluster rows this instance wrote itself
+        private boolean suppressOwnWrites = true;
+        private long ownWriteTtlMs = 60000;
+    }
+
+    @Getter
+    @Setter
+    public static class Subscription {
+        // INSERT, UPDATE, DELETE or *
+        private List<String> events = List.of("*");
+        // Realtime column filter, e.g. "room_id=eq.abc"
+        private String filter;
+        // One channel per configured room filtered on room_id; replaces filter when rooms are set
+        private boolean perRoom;
     }
     
     public String getRealtimeWsUrl() {
         // Convert https://project.supabase.co to wss://project.supabase.co/realtime/v1/websocket
-        return projectUrl.replace("https://", "wss://") + "/realtime/v1/websocket";
+        // (plain http, e.g. a local stand-in, maps to ws)
+        return projectUrl.replace("https://", "wss://").replace("http://", "ws://") + "/realtime/v1/websocket";
     }
     
     @Bean
@@ -0,0 +1,55 @@
+package com.supabase.qnasession.controller;
+
+import com.supabase.qnasession.repository.RoomRepository;
+import com.supabase.qnasession.service.MessageIngestService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@Slf4j
+@RequiredArgsConstructor
+public class MessageIngestController {
+
+    private final MessageIngestService messageIngestService;
+    private final RoomRepository roomRepository;
+
+    /**
+     * Imports a JSON array of messages. The body is read as a stream rather than bound up front,
+     * so a full batch never sits in memory; only {@code ingest.max-concurrent} imports run at
+     * once and further requests get 429.
+     */
+    @PostMapping("/rooms/{roomId}/messages/bulk")
+    public ResponseEntity<?> ingest(@PathVariable String roomId, HttpServletRequest request) {
+        if (!roomRepository.existsById(roomId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "room not found"));
+        }
+        if (!messageIngestService.tryAcquireSlot()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+
+        try {
+            int inserted = messageIngestService.ingest(roomId, request.getInputStream());
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("inserted", inserted));
+        } catch (MessageIngestService.IngestValidationException e) {
+            return ResponseEntity.badRequest().body(Map.of("errors", e.getErrors()));
+        } catch (MessageIngestService.DuplicateMessageException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "messages already exist", "ids", e.getIds()));
+        } catch (Exception e) {
+            log.error("Bulk ingest failed for room {}", roomId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "bulk ingest failed"));
+        } finally {
+            messageIngestService.releaseSlot();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.supabase.qnasession.controller;
+
+import com.supabase.qnasession.service.ReclusterJob;
+import com.supabase.qnasession.service.ReclusterService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/recluster")
+@RequiredArgsConstructor
+public class ReclusterController {
+
+    private final ReclusterService reclusterService;
+
+    public record ReclusterRequest(List<String> roomIds, Instant from, Instant to) {
+    }
+
+    @PostMapping
+    public ResponseEntity<ReclusterJob> start(@RequestBody ReclusterRequest request) {
+        ReclusterJob job = reclusterService.start(request.roomIds(), request.from(), request.to());
+        return ResponseEntity.accepted().body(job);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ReclusterJob> status(@PathVariable String jobId) {
+        return reclusterService.find(jobId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,69 @@
+package com.supabase.qnasession.controller;
+
+import com.supabase.qnasession.service.ClusterReadModel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequiredArgsConstructor
+public class RoomClusterController {
+
+    private final ClusterReadModel clusterReadModel;
+
+    /**
+     * Clusters of a room from memory. Pass {@code since} to receive only clusters changed after
+     * that version plus the ids of removed ones; follow {@code nextCursor} for further pages.
+     */
+    @GetMapping("/rooms/{roomId}/clusters")
+    public ResponseEntity<?> clusters(@PathVariable String roomId,
+                                      @RequestParam(required = false) Long since,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<ClusterReadModel.Page> page;
+        try {
+            page = clusterReadModel.read(roomId, since, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        if (page.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "room not found"));
+        }
+
+        // The body depends on the query as well as the room version
+        String etag = "\"" + page.get().version() + "-" + (since == null ? "" : since) + "-"
+            + (cursor == null ? "" : cursor) + "-" + (limit == null ? "" : limit) + "\"";
+        CacheControl cacheControl = CacheControl.noCache();
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(page.get());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
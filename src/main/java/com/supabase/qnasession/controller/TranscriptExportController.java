@@ -0,0 +1,108 @@
+package com.supabase.qnasession.controller;
+
+import com.supabase.qnasession.repository.RoomRepository;
+import com.supabase.qnasession.service.TranscriptExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@Slf4j
+@RequiredArgsConstructor
+public class TranscriptExportController {
+
+    private static final String SLOT_INTERCEPTOR_KEY = TranscriptExportController.class.getName() + ".slot";
+
+    private final TranscriptExportService transcriptExportService;
+    private final RoomRepository roomRepository;
+
+    /**
+     * Downloads every message of a room with its cluster title and votes as CSV or NDJSON. The
+     * body is gzip-encoded when the client accepts it. At most {@code export.max-concurrent}
+     * exports run at once; further requests get 429. The stream is bounded by
+     * {@code spring.mvc.async.request-timeout}. The slot is freed when the body finishes or, if
+     * the body never runs, when the async request completes on timeout, error or client abort.
+     */
+    @GetMapping("/rooms/{roomId}/export")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable String roomId,
+                                                        @RequestParam(defaultValue = "csv") String format,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                        HttpServletRequest request) {
+        TranscriptExportService.Format exportFormat;
+        try {
+            exportFormat = TranscriptExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!roomRepository.existsById(roomId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        if (!transcriptExportService.tryAcquireSlot()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable releaseSlot = () -> {
+            if (released.compareAndSet(false, true)) {
+                transcriptExportService.releaseSlot();
+            }
+        };
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(SLOT_INTERCEPTOR_KEY,
+            new CallableProcessingInterceptor() {
+                @Override
+                public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                    releaseSlot.run();
+                }
+            });
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+            try {
+                transcriptExportService.export(roomId, exportFormat, target);
+                if (target instanceof GZIPOutputStream gzipStream) {
+                    gzipStream.finish();
+                }
+            } catch (Exception e) {
+                // Headers are already sent; the truncated body is all the client will see
+                log.error("Transcript export failed for room {}", roomId, e);
+                throw new IllegalStateException("Transcript export failed", e);
+            } finally {
+                releaseSlot.run();
+            }
+        };
+
+        String extension = exportFormat == TranscriptExportService.Format.CSV ? "csv" : "ndjson";
+        MediaType contentType = exportFormat == TranscriptExportService.Format.CSV
+            ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+            : new MediaType("application", "x-ndjson");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(contentType)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"room-" + roomId.replaceAll("[^A-Za-z0-9_-]", "_") + "." + extension + "\"")
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+}
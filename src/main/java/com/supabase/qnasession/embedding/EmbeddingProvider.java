@@ -0,0 +1,22 @@
+package com.supabase.qnasession.embedding;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Turns message text into dense vectors for nearest-cluster lookups
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Embeds a batch of texts
+     * @param texts The texts to embed
+     * @return One vector per input text in the same order, or empty if the batch could not be embedded
+     */
+    Optional<List<float[]>> embed(List<String> texts);
+
+    /**
+     * @return The dimension of every vector returned by {@link #embed(List)}
+     */
+    int dimensions();
+}
@@ -0,0 +1,119 @@
+package com.supabase.qnasession.embedding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supabase.qnasession.config.EmbeddingConfig;
+import com.supabase.qnasession.config.GeminiConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "embedding", name = "provider", havingValue = "gemini", matchIfMissing = true)
+public class GeminiEmbeddingProvider implements EmbeddingProvider {
+
+    // batchEmbedContents accepts at most 100 requests per call
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final GeminiConfig geminiConfig;
+    private final EmbeddingConfig embeddingConfig;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+
+    @Override
+    public Optional<List<float[]>> embed(List<String> texts) {
+        if (texts.isEmpty()) {
+            return Optional.of(List.of());
+        }
+        if (geminiConfig.getApiKey() == null || geminiConfig.getApiKey().isBlank()) {
+            log.warn("Gemini API key is missing; skipping embeddings");
+            return Optional.empty();
+        }
+
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (int start = 0; start < texts.size(); start += MAX_BATCH_SIZE) {
+            List<String> chunk = texts.subList(start, Math.min(texts.size(), start + MAX_BATCH_SIZE));
+            Optional<List<float[]>> embedded = embedChunk(chunk);
+            if (embedded.isEmpty()) {
+                return Optional.empty();
+            }
+            vectors.addAll(embedded.get());
+        }
+        return Optional.of(vectors);
+    }
+
+    @Override
+    public int dimensions() {
+        return embeddingConfig.getDimensions();
+    }
+
+    private Optional<List<float[]>> embedChunk(List<String> texts) {
+        try {
+            String model = "models/" + embeddingConfig.getModel();
+            String url = geminiConfig.getBaseUrl() + "/" + model + ":batchEmbedContents";
+            List<Map<String, Object>> requests = new ArrayList<>(texts.size());
+            for (String text : texts) {
+                requests.add(Map.of(
+                    "model", model,
+                    "content", Map.of("parts", List.of(Map.of("text", text))),
+                    "outputDimensionality", embeddingConfig.getDimensions()
+                ));
+            }
+
+            String jsonBody = objectMapper.writeValueAsString(Map.of("requests", requests));
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("x-goog-api-key", geminiConfig.getApiKey())
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
+                .build();
+
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 400) {
+                log.warn("Gemini embedding API error {}: {}", response.statusCode(), response.body());
+                return Optional.empty();
+            }
+
+            JsonNode embeddings = objectMapper.readTree(response.body()).path("embeddings");
+            if (!embeddings.isArray() || embeddings.size() != texts.size()) {
+                log.warn("Gemini embedding response had {} vectors for {} texts", embeddings.size(), texts.size());
+                return Optional.empty();
+            }
+
+            List<float[]> vectors = new ArrayList<>(texts.size());
+            for (JsonNode embedding : embeddings) {
+                JsonNode values = embedding.path("values");
+                if (values.size() != embeddingConfig.getDimensions()) {
+                    log.warn("Gemini embedding had {} dimensions, expected {}",
+                        values.size(), embeddingConfig.getDimensions());
+                    return Optional.empty();
+                }
+                float[] vector = new float[values.size()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = (float) values.get(i).asDouble();
+                }
+                vectors.add(vector);
+            }
+            return Optional.of(vectors);
+        } catch (Exception e) {
+            log.error("Failed to call Gemini embedding API", e);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.supabase.qnasession.embedding;
+
+import com.supabase.qnasession.config.EmbeddingConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Deterministic feature-hashing embedder over word tokens and character trigrams.
+ * Needs no network, so it stands in for Gemini in tests and offline runs.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "embedding", name = "provider", havingValue = "local")
+public class LocalEmbeddingProvider implements EmbeddingProvider {
+
+    private final EmbeddingConfig embeddingConfig;
+
+    @Override
+    public Optional<List<float[]>> embed(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embedOne(text));
+        }
+        return Optional.of(vectors);
+    }
+
+    @Override
+    public int dimensions() {
+        return embeddingConfig.getDimensions();
+    }
+
+    private float[] embedOne(String text) {
+        float[] vector = new float[dimensions()];
+        String normalized = text == null ? "" : text.toLowerCase(Locale.ROOT);
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            addFeature(vector, "w:" + token, 1.0f);
+            String padded = "#" + token + "#";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                addFeature(vector, "g:" + padded.substring(i, i + 3), 0.5f);
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private void addFeature(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode();
+        int index = Math.floorMod(hash, vector.length);
+        // Use an independent bit for the sign so colliding features tend to cancel out
+        float sign = ((hash >>> 16) & 1) == 0 ? 1f : -1f;
+        vector[index] += sign * weight;
+    }
+}
@@ -0,0 +1,32 @@
+package com.supabase.qnasession.listener;
+
+import com.supabase.qnasession.models.Cluster;
+import com.supabase.qnasession.service.ClusterWriteTracker;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA entity listener for {@link Cluster}. Hibernate obtains its own instance of this class
+ * through Spring's bean container rather than a shared singleton, so the recorded writes are
+ * kept in the injected {@link ClusterWriteTracker} singleton, where the realtime service reads them.
+ */
+public class ClusterWriteListener {
+
+    private final ClusterWriteTracker clusterWriteTracker;
+
+    public ClusterWriteListener(ClusterWriteTracker clusterWriteTracker) {
+        this.clusterWriteTracker = clusterWriteTracker;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void afterWrite(Cluster cluster) {
+        clusterWriteTracker.record(cluster, false);
+    }
+
+    @PostRemove
+    public void afterRemove(Cluster cluster) {
+        clusterWriteTracker.record(cluster, true);
+    }
+}
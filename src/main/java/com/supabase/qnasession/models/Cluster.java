@@ -1,5 +1,6 @@
 package com.supabase.qnasession.models;
 
+import com.supabase.qnasession.listener.ClusterWriteListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -10,6 +11,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "clusters")
+@EntityListeners(ClusterWriteListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -28,4 +28,12 @@ public interface RealtimeChangeListener {
      * @param oldRecord The deleted record data
      */
     void onDelete(String table, Map<String, Object> oldRecord);
+
+    /**
+     * Called when a channel join is acknowledged, on the first connect and after every
+     * reconnect. Changes committed while the channel was not joined were never delivered.
+     * @param topic The joined channel topic
+     */
+    default void onSubscribed(String topic) {
+    }
 }
@@ -2,11 +2,19 @@ package com.supabase.qnasession.repository;
 
 import com.supabase.qnasession.models.Cluster;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface ClusterRepository extends JpaRepository<Cluster, UUID> {
 
     Optional<Cluster> findFirstByRoomIdAndTitle(String roomId, String title);
+
+    List<Cluster> findByRoomId(String roomId);
+
+    @Query("select c.roomId as roomId, count(c) as clusterCount, max(c.updatedAt) as lastUpdated "
+        + "from Cluster c where c.roomId is not null group by c.roomId")
+    List<RoomClusterStamp> findRoomStamps();
 }
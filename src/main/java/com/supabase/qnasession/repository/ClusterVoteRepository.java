@@ -0,0 +1,26 @@
+package com.supabase.qnasession.repository;
+
+import com.supabase.qnasession.models.ClusterVote;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.UUID;
+
+public interface ClusterVoteRepository extends JpaRepository<ClusterVote, UUID> {
+
+    /**
+     * Re-points votes from one cluster to another, skipping users who already voted for the target
+     */
+    @Modifying
+    @Query(value = "update cluster_votes v set cluster_id = :target "
+        + "where v.cluster_id = :source and not exists "
+        + "(select 1 from cluster_votes t where t.cluster_id = :target and t.user_id = v.user_id)",
+        nativeQuery = true)
+    int moveVotes(@Param("source") UUID source, @Param("target") UUID target);
+
+    @Modifying
+    @Query("delete from ClusterVote v where v.clusterId = :clusterId")
+    int deleteAllByClusterId(@Param("clusterId") UUID clusterId);
+}
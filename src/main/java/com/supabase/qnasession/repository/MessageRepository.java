@@ -1,9 +1,14 @@
 package com.supabase.qnasession.repository;
 
 import com.supabase.qnasession.models.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -11,6 +16,43 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
 
     List<Message> findByRoomIdAndClusterIdIsNullOrderByCreatedAtAsc(String roomId);
 
+    List<Message> findByRoomIdAndClusterIdIsNullOrderByCreatedAtAsc(String roomId, Pageable pageable);
+
     @Query("select distinct m.roomId from Message m where m.roomId is not null")
     List<String> findDistinctRoomIds();
+
+    @Query("select distinct m.roomId from Message m where m.roomId is not null and m.clusterId is null")
+    List<String> findRoomIdsWithUnclustered();
+
+    @Query("select distinct m.roomId from Message m "
+        + "where m.roomId is not null and m.clusterId is null and m.createdAt > :since")
+    List<String> findRoomIdsWithUnclusteredSince(@Param("since") Instant since);
+
+    List<Message> findByRoomIdAndCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAtAscIdAsc(
+        String roomId, Instant from, Instant to, Pageable pageable);
+
+    @Query("select m from Message m where m.roomId = :roomId and m.createdAt < :to "
+        + "and (m.createdAt > :afterCreatedAt or (m.createdAt = :afterCreatedAt and m.id > :afterId)) "
+        + "order by m.createdAt asc, m.id asc")
+    List<Message> findByRoomIdAfterBefore(@Param("roomId") String roomId,
+                                          @Param("afterCreatedAt") Instant afterCreatedAt,
+                                          @Param("afterId") UUID afterId,
+                                          @Param("to") Instant to,
+                                          Pageable pageable);
+
+    @Query("select distinct m.roomId from Message m "
+        + "where m.roomId is not null and m.createdAt >= :from and m.createdAt < :to")
+    List<String> findRoomIdsWithMessagesBetween(@Param("from") Instant from, @Param("to") Instant to);
+
+    long countByClusterId(UUID clusterId);
+
+    List<Message> findByClusterIdOrderByCreatedAtDesc(UUID clusterId, Pageable pageable);
+
+    @Modifying
+    @Query("update Message m set m.clusterId = :clusterId where m.id in :ids")
+    int assignCluster(@Param("clusterId") UUID clusterId, @Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query("update Message m set m.clusterId = :target where m.clusterId = :source")
+    int reassignCluster(@Param("source") UUID source, @Param("target") UUID target);
 }
@@ -0,0 +1,15 @@
+package com.supabase.qnasession.repository;
+
+import java.time.Instant;
+
+/**
+ * Cheap per-room version stamp of the clusters table, used to validate cached room state
+ */
+public interface RoomClusterStamp {
+
+    String getRoomId();
+
+    long getClusterCount();
+
+    Instant getLastUpdated();
+}
@@ -0,0 +1,230 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of topic assignments returned by the LLM.
+ * Every parsed response is written here before the database transaction that applies it,
+ * so a crash or rollback does not throw away assignments that were already paid for.
+ * Surviving records are replayed on startup and the journal is truncated after each commit.
+ *
+ * Layout: header [magic:int][version:int][generation:long] followed by records
+ * [length:int][crc32:int][generation:long][payload]. A record is only valid if its length
+ * is non-zero, its generation matches the header and its checksum matches, which makes
+ * torn writes and records left over from before a truncation invisible.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AssignmentJournal {
+
+    private static final int MAGIC = 0x514E414A;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 16;
+
+    private final ClusteringConfig clusteringConfig;
+    private final Map<String, Map<UUID, String>> pending = new LinkedHashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long generation;
+    private int position;
+
+    @PostConstruct
+    public synchronized void open() {
+        ClusteringConfig.Journal settings = clusteringConfig.getJournal();
+        if (!settings.isEnabled()) {
+            return;
+        }
+        try {
+            Path path = Path.of(settings.getPath());
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, settings.getCapacityBytes());
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(8, 0L);
+                buffer.putInt(FILE_HEADER_BYTES, 0);
+                buffer.force();
+            }
+            generation = buffer.getLong(8);
+            position = FILE_HEADER_BYTES;
+            replay();
+            if (!pending.isEmpty()) {
+                int count = pending.values().stream().mapToInt(Map::size).sum();
+                log.info("Recovered {} journaled topic assignments for {} rooms", count, pending.size());
+            }
+        } catch (IOException e) {
+            log.error("Failed to open clustering journal at {}; continuing without it", settings.getPath(), e);
+            close();
+        }
+    }
+
+    /**
+     * Durably records one LLM response before it is applied.
+     */
+    public synchronized void append(UUID promptId, Map<String, Map<UUID, String>> topicsByRoom) {
+        if (topicsByRoom.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Map<UUID, String>> entry : topicsByRoom.entrySet()) {
+            pending.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).putAll(entry.getValue());
+        }
+        if (buffer == null) {
+            return;
+        }
+
+        try {
+            byte[] payload = encode(promptId, topicsByRoom);
+            if (position + RECORD_HEADER_BYTES + payload.length + 4 > buffer.capacity()) {
+                log.warn("Clustering journal is full; prompt {} is kept in memory only", promptId);
+                return;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            buffer.putInt(position + 4, (int) crc.getValue());
+            buffer.putLong(position + 8, generation);
+            buffer.put(position + RECORD_HEADER_BYTES, payload);
+            // Terminate the log after this record, then publish it by writing its length last
+            buffer.putInt(position + RECORD_HEADER_BYTES + payload.length, 0);
+            buffer.putInt(position, payload.length);
+            buffer.force();
+            position += RECORD_HEADER_BYTES + payload.length;
+        } catch (IOException e) {
+            log.error("Failed to journal assignments for prompt {}", promptId, e);
+        }
+    }
+
+    /**
+     * Assignments that were journaled but not yet committed, keyed by room.
+     */
+    public synchronized Map<String, Map<UUID, String>> pending() {
+        Map<String, Map<UUID, String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<UUID, String>> entry : pending.entrySet()) {
+            copy.put(entry.getKey(), Map.copyOf(entry.getValue()));
+        }
+        return copy;
+    }
+
+    public synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Drops every journaled record; called once the transaction applying them has committed.
+     */
+    public synchronized void truncate() {
+        pending.clear();
+        if (buffer == null || position == FILE_HEADER_BYTES) {
+            return;
+        }
+        generation++;
+        buffer.putLong(8, generation);
+        buffer.putInt(FILE_HEADER_BYTES, 0);
+        buffer.force();
+        position = FILE_HEADER_BYTES;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        buffer = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close clustering journal", e);
+            }
+            channel = null;
+        }
+    }
+
+    private void replay() {
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            if (buffer.getLong(position + 8) != generation) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + RECORD_HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("Clustering journal record at offset {} is corrupt; ignoring the tail", position);
+                break;
+            }
+            try {
+                decode(payload);
+            } catch (IOException e) {
+                log.warn("Failed to decode clustering journal record at offset {}", position, e);
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    private byte[] encode(UUID promptId, Map<String, Map<UUID, String>> topicsByRoom) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(promptId.getMostSignificantBits());
+            out.writeLong(promptId.getLeastSignificantBits());
+            out.writeInt(topicsByRoom.size());
+            for (Map.Entry<String, Map<UUID, String>> room : topicsByRoom.entrySet()) {
+                out.writeUTF(room.getKey());
+                out.writeInt(room.getValue().size());
+                for (Map.Entry<UUID, String> assignment : room.getValue().entrySet()) {
+                    out.writeLong(assignment.getKey().getMostSignificantBits());
+                    out.writeLong(assignment.getKey().getLeastSignificantBits());
+                    out.writeUTF(assignment.getValue());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            in.readLong();
+            in.readLong();
+            int rooms = in.readInt();
+            for (int r = 0; r < rooms; r++) {
+                String roomId = in.readUTF();
+                int count = in.readInt();
+                Map<UUID, String> topics = pending.computeIfAbsent(roomId, key -> new HashMap<>());
+                for (int i = 0; i < count; i++) {
+                    UUID messageId = new UUID(in.readLong(), in.readLong());
+                    topics.put(messageId, in.readUTF());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import com.supabase.qnasession.models.Cluster;
+import com.supabase.qnasession.models.Message;
+import com.supabase.qnasession.repository.ClusterRepository;
+import com.supabase.qnasession.repository.MessageRepository;
+import com.supabase.qnasession.repository.RoomClusterStamp;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Periodically merges near-synonymous clusters within a room ("LLM", "LLMs", "Large language
+ * models"). Candidates are scored by title/keyword similarity and by the overlap of sampled member
+ * messages; the smaller cluster of each accepted pair is folded into the larger one. Work is
+ * bounded per run and rooms whose clusters have not changed since their last pass are skipped.
+ * A run that finds a clustering cycle holding {@link ClusterCycleLock} is skipped rather than
+ * merging clusters the cycle is still writing to.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ClusterCompactionService {
+
+    private final ClusteringConfig clusteringConfig;
+    private final ClusterRepository clusterRepository;
+    private final MessageRepository messageRepository;
+    private final ClusterMergeService clusterMergeService;
+    private final TopicCanonicalizer topicCanonicalizer;
+    private final PlatformTransactionManager transactionManager;
+    private final ClusterCycleLock clusterCycleLock;
+
+    private final Map<String, Instant> compactedAt = new ConcurrentHashMap<>();
+    private String cursor = "";
+
+    @Scheduled(
+        fixedDelayString = "${clustering.compaction.interval-ms:60000}",
+        initialDelayString = "${clustering.compaction.interval-ms:60000}"
+    )
+    public void compact() {
+        ClusteringConfig.Compaction settings = clusteringConfig.getCompaction();
+        if (!settings.isEnabled()) {
+            return;
+        }
+        if (!clusterCycleLock.tryLock()) {
+            log.debug("Clustering cycle in progress; compaction deferred to the next run");
+            return;
+        }
+        try {
+            compactRooms(settings);
+        } finally {
+            clusterCycleLock.unlock();
+        }
+    }
+
+    private void compactRooms(ClusteringConfig.Compaction settings) {
+        Instant idleCutoff = Instant.now().minusMillis(clusteringConfig.getLifecycle().getIdleAfterMs());
+        List<RoomClusterStamp> candidates = new ArrayList<>();
+        for (RoomClusterStamp stamp : clusterRepository.findRoomStamps()) {
+            if (stamp.getLastUpdated() == null || stamp.getLastUpdated().isBefore(idleCutoff)) {
+                // Idle rooms were compacted while active; forget them so this map stays small
+                compactedAt.remove(stamp.getRoomId());
+                continue;
+            }
+            boolean unchanged = Objects.equals(compactedAt.get(stamp.getRoomId()), stamp.getLastUpdated());
+            if (stamp.getClusterCount() < 2 || unchanged) {
+                continue;
+            }
+            candidates.add(stamp);
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        // Round-robin over rooms by id so every room is eventually visited
+        candidates.sort(Comparator.comparing(RoomClusterStamp::getRoomId));
+        int startAt = 0;
+        while (startAt < candidates.size() && candidates.get(startAt).getRoomId().compareTo(cursor) <= 0) {
+            startAt++;
+        }
+
+        int mergesLeft = settings.getMaxMergesPerRun();
+        int roomsVisited = 0;
+        for (int i = 0; i < candidates.size() && roomsVisited < settings.getRoomsPerRun() && mergesLeft > 0; i++) {
+            RoomClusterStamp stamp = candidates.get((startAt + i) % candidates.size());
+            String roomId = stamp.getRoomId();
+            cursor = roomId;
+            roomsVisited++;
+
+            int budget = mergesLeft;
+            Integer merged = new TransactionTemplate(transactionManager).execute(status -> compactRoom(roomId, budget));
+            int done = merged == null ? 0 : merged;
+            mergesLeft -= done;
+            if (done == 0) {
+                compactedAt.put(roomId, stamp.getLastUpdated());
+            }
+        }
+    }
+
+    private int compactRoom(String roomId, int maxMerges) {
+        ClusteringConfig.Compaction settings = clusteringConfig.getCompaction();
+        List<Cluster> clusters = new ArrayList<>(clusterRepository.findByRoomId(roomId));
+        clusters.sort(Comparator.comparingInt(ClusterCompactionService::size).reversed());
+        if (clusters.size() > settings.getMaxClustersPerRoom()) {
+            clusters = clusters.subList(0, settings.getMaxClustersPerRoom());
+        }
+
+        List<ClusterProfile> profiles = new ArrayList<>(clusters.size());
+        for (Cluster cluster : clusters) {
+            profiles.add(profile(cluster, settings.getSampleMessages()));
+        }
+
+        List<Candidate> pairs = new ArrayList<>();
+        for (int i = 0; i < profiles.size(); i++) {
+            for (int j = i + 1; j < profiles.size(); j++) {
+                double score = similarity(profiles.get(i), profiles.get(j), settings.getTitleWeight());
+                if (score >= settings.getMergeThreshold()) {
+                    // Profiles are sorted largest first, so i is the surviving cluster
+                    pairs.add(new Candidate(profiles.get(i).cluster(), profiles.get(j).cluster(), score));
+                }
+            }
+        }
+        pairs.sort(Comparator.comparingDouble(Candidate::score).reversed());
+
+        Set<UUID> touched = new HashSet<>();
+        int merges = 0;
+        for (Candidate pair : pairs) {
+            if (merges >= maxMerges) {
+                break;
+            }
+            if (touched.contains(pair.target().getId()) || touched.contains(pair.source().getId())) {
+                continue;
+            }
+            log.debug("Compacting room {}: '{}' -> '{}' (score {})",
+                roomId, pair.source().getTitle(), pair.target().getTitle(), String.format("%.2f", pair.score()));
+            clusterMergeService.merge(pair.source(), pair.target());
+            touched.add(pair.source().getId());
+            touched.add(pair.target().getId());
+            merges++;
+        }
+        if (merges > 0) {
+            log.info("Compacted {} clusters in room {}", merges, roomId);
+        }
+        return merges;
+    }
+
+    private ClusterProfile profile(Cluster cluster, int sampleMessages) {
+        String label = (cluster.getTitle() == null ? "" : cluster.getTitle()) + " "
+            + (cluster.getKeywords() == null ? "" : cluster.getKeywords());
+        Set<String> labelTerms = new HashSet<>(tokens(label));
+        Set<String> labelGrams = trigrams(label);
+        String canonicalKey = topicCanonicalizer.canonicalize(cluster.getRoomId(), cluster.getTitle());
+
+        Map<String, Integer> contentTerms = new HashMap<>();
+        if (sampleMessages > 0) {
+            List<Message> sample = messageRepository
+                .findByClusterIdOrderByCreatedAtDesc(cluster.getId(), PageRequest.of(0, sampleMessages));
+            for (Message message : sample) {
+                // Same analysis as topic keys, so stop words do not dominate the overlap
+                for (String term : topicCanonicalizer.terms(message.getContent())) {
+                    contentTerms.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+        return new ClusterProfile(cluster, canonicalKey, labelTerms, labelGrams, contentTerms);
+    }
+
+    private double similarity(ClusterProfile a, ClusterProfile b, double titleWeight) {
+        double titleSimilarity = !a.canonicalKey().isEmpty() && a.canonicalKey().equals(b.canonicalKey())
+            ? 1.0
+            : Math.max(jaccard(a.labelTerms(), b.labelTerms()), jaccard(a.labelGrams(), b.labelGrams()));
+        if (a.contentTerms().isEmpty() || b.contentTerms().isEmpty()) {
+            return titleSimilarity;
+        }
+        return titleWeight * titleSimilarity + (1 - titleWeight) * cosine(a.contentTerms(), b.contentTerms());
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int shared = 0;
+        for (String term : a) {
+            if (b.contains(term)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    private static double cosine(Map<String, Integer> a, Map<String, Integer> b) {
+        double dot = 0;
+        for (Map.Entry<String, Integer> entry : a.entrySet()) {
+            Integer other = b.get(entry.getKey());
+            if (other != null) {
+                dot += entry.getValue() * other;
+            }
+        }
+        if (dot == 0) {
+            return 0;
+        }
+        return dot / (norm(a) * norm(b));
+    }
+
+    private static double norm(Map<String, Integer> vector) {
+        double sum = 0;
+        for (int value : vector.values()) {
+            sum += (double) value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() < 2) {
+                continue;
+            }
+            // Cheap plural folding so "LLMs" and "LLM" share a term
+            if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+                token = token.substring(0, token.length() - 1);
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        String padded = " " + String.join(" ", tokens(text)) + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static int size(Cluster cluster) {
+        return cluster.getMessageCount() == null ? 0 : cluster.getMessageCount();
+    }
+
+    private record ClusterProfile(Cluster cluster, String canonicalKey, Set<String> labelTerms,
+                                  Set<String> labelGrams, Map<String, Integer> contentTerms) {
+    }
+
+    private record Candidate(Cluster target, Cluster source, double score) {
+    }
+}
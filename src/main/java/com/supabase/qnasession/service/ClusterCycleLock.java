@@ -0,0 +1,45 @@
+package com.supabase.qnasession.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps clustering cycles, re-cluster writes and cluster compaction apart, since all of them
+ * rewrite a room's clusters. Writers hold the lock until their transaction completes, so
+ * compaction never sees or merges clusters whose messages have not been committed yet.
+ */
+@Component
+public class ClusterCycleLock {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Locks until the current transaction completes.
+     *
+     * @return False when no transaction synchronization is active; the caller must then unlock
+     */
+    public boolean lockUntilCompletion() {
+        lock.lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+        return true;
+    }
+
+    public boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+}
@@ -0,0 +1,54 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.models.Cluster;
+import com.supabase.qnasession.repository.ClusterRepository;
+import com.supabase.qnasession.repository.ClusterVoteRepository;
+import com.supabase.qnasession.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Folds one cluster into another inside the caller's transaction: messages and votes move to the
+ * target, votes from users who already voted for the target are dropped, and the source row is
+ * deleted. In-memory indexes keep the source's topic keys, label and centroid as part of the
+ * target, so later messages on the source's topic join the target instead of recreating it.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ClusterMergeService {
+
+    private final ClusterRepository clusterRepository;
+    private final MessageRepository messageRepository;
+    private final ClusterVoteRepository clusterVoteRepository;
+    private final EmbeddingClusterEngine embeddingClusterEngine;
+    private final KeywordClusterClassifier keywordClusterClassifier;
+    private final RoomStateRegistry roomStateRegistry;
+    private final TopicCanonicalizer topicCanonicalizer;
+    private final ClusterReadModel clusterReadModel;
+
+    public Cluster merge(Cluster source, Cluster target) {
+        int movedMessages = messageRepository.reassignCluster(source.getId(), target.getId());
+        clusterVoteRepository.moveVotes(source.getId(), target.getId());
+        int duplicateVotes = clusterVoteRepository.deleteAllByClusterId(source.getId());
+
+        int sourceVotes = source.getVotes() == null ? 0 : source.getVotes();
+        int targetVotes = target.getVotes() == null ? 0 : target.getVotes();
+        target.setVotes(Math.max(0, targetVotes + sourceVotes - duplicateVotes));
+        target.setMessageCount((int) messageRepository.countByClusterId(target.getId()));
+        Cluster saved = clusterRepository.save(target);
+        clusterRepository.delete(source);
+
+        embeddingClusterEngine.foldCluster(source.getRoomId(), source.getId(), target.getId());
+        keywordClusterClassifier.foldCluster(source.getRoomId(), source.getId(), target.getId());
+        roomStateRegistry.redirectCluster(source.getRoomId(),
+            topicCanonicalizer.canonicalize(source.getRoomId(), source.getTitle()), source.getId(), target.getId());
+        clusterReadModel.markDirty(source.getRoomId());
+
+        log.info("Merged cluster '{}' ({}) into '{}' ({}) in room {}: {} messages moved, {} duplicate votes dropped",
+            source.getTitle(), source.getId(), target.getTitle(), target.getId(), source.getRoomId(),
+            movedMessages, duplicateVotes);
+        return saved;
+    }
+}
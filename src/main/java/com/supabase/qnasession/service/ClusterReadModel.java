@@ -0,0 +1,357 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import com.supabase.qnasession.models.Cluster;
+import com.supabase.qnasession.realtime.RealtimeChangeListener;
+import com.supabase.qnasession.repository.ClusterRepository;
+import com.supabase.qnasession.repository.RoomRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cluster lists per room for the read API. Each change to a cluster is stamped with a
+ * version from one increasing counter, so clients can ask for everything changed since the
+ * version they last saw. Rooms are reloaded from the database after our own cluster writes commit,
+ * when a realtime change to `clusters` arrives, after the realtime channel (re)joins, and at least
+ * every {@code max-staleness-ms}, so polling clients rarely reach the database.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ClusterReadModel implements RealtimeChangeListener, RoomStateHolder {
+
+    private static final Comparator<ClusterView> ORDER = Comparator
+        .comparingInt(ClusterView::votes).reversed()
+        .thenComparing(Comparator.comparingInt(ClusterView::messageCount).reversed())
+        .thenComparing(ClusterView::id);
+
+    private final ClusterRepository clusterRepository;
+    private final RoomRepository roomRepository;
+    private final ClusteringConfig clusteringConfig;
+    private final SupabaseRealtimeService realtimeService;
+
+    // Seeded from the clock so versions keep increasing across restarts
+    private final AtomicLong versions = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Map<String, RoomView> rooms = new ConcurrentHashMap<>();
+    // Room ids found missing, with the time until which the answer is trusted
+    private final Map<String, Long> missingRooms = new ConcurrentHashMap<>();
+
+    public record ClusterView(UUID id, String title, String keywords, int messageCount, int votes,
+                              Instant updatedAt, long version) {
+    }
+
+    public record Page(long version, boolean full, List<ClusterView> clusters, List<UUID> removed,
+                       String nextCursor) {
+    }
+
+    private record State(long version, long baseVersion, List<ClusterView> ordered,
+                         Map<UUID, ClusterView> byId, Map<UUID, Long> tombstones) {
+    }
+
+    private static final class RoomView {
+        private volatile boolean dirty = true;
+        private volatile long loadedAt;
+        private volatile State state;
+        private final LinkedHashMap<UUID, Long> tombstones = new LinkedHashMap<>();
+    }
+
+    @PostConstruct
+    public void init() {
+        realtimeService.addListener(this);
+    }
+
+    /**
+     * Clusters of a room ordered by votes, limited to those changed after {@code since} when given.
+     * Requests with a {@code since} older than the remembered history get the full list instead.
+     */
+    public Optional<Page> read(String roomId, Long since, String cursor, Integer limit) {
+        Optional<State> loaded = state(roomId);
+        if (loaded.isEmpty()) {
+            return Optional.empty();
+        }
+        State state = loaded.get();
+        ClusteringConfig.ReadModel settings = clusteringConfig.getReadModel();
+        int pageSize = Math.max(1, Math.min(limit == null ? settings.getDefaultPageSize() : limit,
+            settings.getMaxPageSize()));
+        boolean full = since == null || since < state.baseVersion();
+        ClusterView after = cursor == null ? null : decodeCursor(cursor);
+
+        List<ClusterView> clusters = new ArrayList<>(Math.min(pageSize, state.ordered().size()));
+        String nextCursor = null;
+        for (ClusterView view : state.ordered()) {
+            if ((!full && view.version() <= since) || (after != null && ORDER.compare(view, after) <= 0)) {
+                continue;
+            }
+            if (clusters.size() == pageSize) {
+                nextCursor = encodeCursor(clusters.get(clusters.size() - 1));
+                break;
+            }
+            clusters.add(view);
+        }
+
+        List<UUID> removed = new ArrayList<>();
+        if (!full && after == null) {
+            for (Map.Entry<UUID, Long> tombstone : state.tombstones().entrySet()) {
+                if (tombstone.getValue() > since) {
+                    removed.add(tombstone.getKey());
+                }
+            }
+        }
+        return Optional.of(new Page(state.version(), full, clusters, removed, nextCursor));
+    }
+
+    /**
+     * Schedules a reload of the room after the current transaction commits, or immediately when
+     * called outside one.
+     */
+    public void markDirty(String roomId) {
+        if (roomId == null || !rooms.containsKey(roomId)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(roomId);
+                }
+            });
+        } else {
+            invalidate(roomId);
+        }
+    }
+
+    @Override
+    public Set<String> roomIds() {
+        return Set.copyOf(rooms.keySet());
+    }
+
+    @Override
+    public long estimatedBytes(String roomId) {
+        RoomView view = rooms.get(roomId);
+        State state = view == null ? null : view.state;
+        if (state == null) {
+            return 0;
+        }
+        long bytes = 256 + 96L * state.tombstones().size();
+        for (ClusterView cluster : state.ordered()) {
+            int text = (cluster.title() == null ? 0 : cluster.title().length())
+                + (cluster.keywords() == null ? 0 : cluster.keywords().length());
+            bytes += 200 + 2L * text;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void evictRoom(String roomId) {
+        rooms.remove(roomId);
+    }
+
+    @Override
+    public void onInsert(String table, Map<String, Object> record) {
+        if ("clusters".equals(table)) {
+            invalidate(roomIdOf(record));
+        }
+    }
+
+    @Override
+    public void onUpdate(String table, Map<String, Object> newRecord, Map<String, Object> oldRecord) {
+        if ("clusters".equals(table)) {
+            invalidate(roomIdOf(newRecord));
+        }
+    }
+
+    @Override
+    public void onDelete(String table, Map<String, Object> oldRecord) {
+        if (!"clusters".equals(table)) {
+            return;
+        }
+        String roomId = roomIdOf(oldRecord);
+        if (roomId != null) {
+            invalidate(roomId);
+            return;
+        }
+        // Without REPLICA IDENTITY FULL only the primary key is sent
+        UUID clusterId;
+        try {
+            clusterId = UUID.fromString(String.valueOf(oldRecord == null ? null : oldRecord.get("id")));
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        for (RoomView view : rooms.values()) {
+            State state = view.state;
+            if (state != null && state.byId().containsKey(clusterId)) {
+                view.dirty = true;
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribed(String topic) {
+        // Anything committed while the channel was down was missed; reload every room on next read
+        for (RoomView view : rooms.values()) {
+            view.dirty = true;
+        }
+    }
+
+    private void invalidate(String roomId) {
+        RoomView view = roomId == null ? null : rooms.get(roomId);
+        if (view != null) {
+            view.dirty = true;
+        }
+    }
+
+    private Optional<State> state(String roomId) {
+        RoomView view = rooms.get(roomId);
+        if (view == null) {
+            if (isKnownMissing(roomId)) {
+                return Optional.empty();
+            }
+            if (!roomRepository.existsById(roomId)) {
+                rememberMissing(roomId);
+                return Optional.empty();
+            }
+            view = rooms.computeIfAbsent(roomId, key -> new RoomView());
+        }
+        long maxStalenessMs = clusteringConfig.getReadModel().getMaxStalenessMs();
+        if (maxStalenessMs > 0 && System.currentTimeMillis() - view.loadedAt > maxStalenessMs) {
+            // Covers changes that never produce an event: other writers, direct SQL, missed frames
+            view.dirty = true;
+        }
+        if (view.dirty) {
+            synchronized (view) {
+                if (view.dirty) {
+                    // Cleared first so a change committed during the reload triggers another one
+                    view.dirty = false;
+                    long startedAt = System.currentTimeMillis();
+                    try {
+                        refresh(roomId, view);
+                        view.loadedAt = startedAt;
+                    } catch (Exception e) {
+                        view.dirty = true;
+                        log.warn("Failed to reload clusters for room {}", roomId, e);
+                        if (view.state == null) {
+                            return Optional.empty();
+                        }
+                    }
+                }
+            }
+        }
+        return Optional.ofNullable(view.state);
+    }
+
+    private boolean isKnownMissing(String roomId) {
+        Long until = missingRooms.get(roomId);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            missingRooms.remove(roomId, until);
+            return false;
+        }
+        return true;
+    }
+
+    private void rememberMissing(String roomId) {
+        ClusteringConfig.ReadModel settings = clusteringConfig.getReadModel();
+        if (missingRooms.size() >= settings.getMaxMissingRooms()) {
+            long now = System.currentTimeMillis();
+            missingRooms.values().removeIf(until -> until < now);
+            if (missingRooms.size() >= settings.getMaxMissingRooms()) {
+                missingRooms.clear();
+            }
+        }
+        missingRooms.put(roomId, System.currentTimeMillis() + settings.getMissingRoomTtlMs());
+    }
+
+    private void refresh(String roomId, RoomView view) {
+        List<Cluster> rows = clusterRepository.findByRoomId(roomId);
+        State previous = view.state;
+        long baseVersion = previous == null ? versions.incrementAndGet() : previous.baseVersion();
+        long version = previous == null ? baseVersion : previous.version();
+        Map<UUID, ClusterView> current = previous == null ? Map.of() : previous.byId();
+
+        Map<UUID, ClusterView> byId = new HashMap<>();
+        for (Cluster cluster : rows) {
+            ClusterView existing = current.get(cluster.getId());
+            ClusterView candidate = toView(cluster, existing == null ? 0 : existing.version());
+            if (existing != null && existing.equals(candidate)) {
+                byId.put(cluster.getId(), existing);
+                continue;
+            }
+            version = versions.incrementAndGet();
+            byId.put(cluster.getId(), toView(cluster, version));
+            view.tombstones.remove(cluster.getId());
+        }
+        for (UUID id : current.keySet()) {
+            if (!byId.containsKey(id)) {
+                version = versions.incrementAndGet();
+                view.tombstones.put(id, version);
+            }
+        }
+
+        int maxTombstones = clusteringConfig.getReadModel().getMaxTombstonesPerRoom();
+        Iterator<Map.Entry<UUID, Long>> oldest = view.tombstones.entrySet().iterator();
+        while (view.tombstones.size() > maxTombstones && oldest.hasNext()) {
+            // Clients behind a forgotten removal can no longer be given a correct delta
+            baseVersion = Math.max(baseVersion, oldest.next().getValue());
+            oldest.remove();
+        }
+
+        List<ClusterView> ordered = new ArrayList<>(byId.values());
+        ordered.sort(ORDER);
+        view.state = new State(version, baseVersion, List.copyOf(ordered), Map.copyOf(byId),
+            Map.copyOf(view.tombstones));
+    }
+
+    private static ClusterView toView(Cluster cluster, long version) {
+        return new ClusterView(
+            cluster.getId(),
+            cluster.getTitle(),
+            cluster.getKeywords(),
+            cluster.getMessageCount() == null ? 0 : cluster.getMessageCount(),
+            cluster.getVotes() == null ? 0 : cluster.getVotes(),
+            cluster.getUpdatedAt(),
+            version
+        );
+    }
+
+    private static String roomIdOf(Map<String, Object> record) {
+        Object roomId = record == null ? null : record.get("room_id");
+        return roomId == null ? null : roomId.toString();
+    }
+
+    private static String encodeCursor(ClusterView last) {
+        String raw = last.votes() + ":" + last.messageCount() + ":" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ClusterView decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+            return new ClusterView(UUID.fromString(parts[2]), null, null,
+                Integer.parseInt(parts[1]), Integer.parseInt(parts[0]), null, 0);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.supabase.qnasession.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.supabase.qnasession.config.SupabaseConfig;
+import com.supabase.qnasession.listener.ClusterWriteListener;
+import com.supabase.qnasession.models.Cluster;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers the cluster rows this instance writes, as reported by {@link ClusterWriteListener},
+ * so their realtime echo can be dropped before it is converted and dispatched to listeners. A
+ * change matches when id, votes, message count and updated_at are identical, so vote updates
+ * made by other clients still come through. Entries that never echo back expire after a TTL.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ClusterWriteTracker {
+
+    private record Write(Long votes, Long messageCount, Long updatedAtMicros, boolean deleted, long recordedAt) {
+    }
+
+    private final SupabaseConfig supabaseConfig;
+
+    private final Map<UUID, List<Write>> writes = new HashMap<>();
+    private long lastExpiry;
+
+    /**
+     * True when a postgres_changes frame for the clusters table describes one of our own writes.
+     */
+    public synchronized boolean isOwnWrite(String type, JsonNode record, JsonNode oldRecord) {
+        boolean deleted = "DELETE".equalsIgnoreCase(type);
+        JsonNode row = deleted ? oldRecord : record;
+        UUID id;
+        try {
+            id = UUID.fromString(row.path("id").asText());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        List<Write> pending = writes.get(id);
+        if (pending == null) {
+            return false;
+        }
+
+        Long votes = row.hasNonNull("votes") ? row.get("votes").asLong() : null;
+        Long messageCount = row.hasNonNull("message_count") ? row.get("message_count").asLong() : null;
+        Long updatedAt = parseMicros(row.path("updated_at").asText(null));
+        for (Iterator<Write> it = pending.iterator(); it.hasNext(); ) {
+            Write write = it.next();
+            boolean matches = deleted
+                ? write.deleted()
+                : !write.deleted()
+                    && votes != null && votes.equals(write.votes())
+                    && messageCount != null && messageCount.equals(write.messageCount())
+                    && updatedAt != null && write.updatedAtMicros() != null
+                    // PostgreSQL rounds to microseconds, we truncate
+                    && Math.abs(updatedAt - write.updatedAtMicros()) <= 1;
+            if (matches) {
+                it.remove();
+                if (pending.isEmpty()) {
+                    writes.remove(id);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void record(Cluster cluster, boolean deleted) {
+        if (!supabaseConfig.getRealtime().isSuppressOwnWrites() || cluster.getId() == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        expire(now);
+        Long updatedAt = cluster.getUpdatedAt() == null
+            ? null
+            : ChronoUnit.MICROS.between(Instant.EPOCH, cluster.getUpdatedAt());
+        writes.computeIfAbsent(cluster.getId(), key -> new ArrayList<>(2)).add(new Write(
+            cluster.getVotes() == null ? null : cluster.getVotes().longValue(),
+            cluster.getMessageCount() == null ? null : cluster.getMessageCount().longValue(),
+            updatedAt, deleted, now));
+    }
+
+    private void expire(long now) {
+        long ttl = supabaseConfig.getRealtime().getOwnWriteTtlMs();
+        if (now - lastExpiry < ttl / 4) {
+            return;
+        }
+        lastExpiry = now;
+        writes.values().forEach(pending -> pending.removeIf(write -> now - write.recordedAt() > ttl));
+        writes.values().removeIf(List::isEmpty);
+    }
+
+    private static Long parseMicros(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            return ChronoUnit.MICROS.between(Instant.EPOCH, OffsetDateTime.parse(text).toInstant());
+        } catch (DateTimeParseException e) {
+            try {
+                // timestamp without time zone columns arrive without an offset
+                return ChronoUnit.MICROS.between(Instant.EPOCH, LocalDateTime.parse(text).toInstant(ZoneOffset.UTC));
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.EmbeddingConfig;
+import com.supabase.qnasession.embedding.EmbeddingProvider;
+import com.supabase.qnasession.models.Cluster;
+import com.supabase.qnasession.models.Message;
+import com.supabase.qnasession.repository.ClusterRepository;
+import com.supabase.qnasession.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns messages to the nearest existing cluster centroid of their room so that
+ * only messages that start genuinely new clusters need an LLM label. A room's index is seeded
+ * on first use from a sample of each existing cluster's messages, so restarts and evictions do
+ * not leave routing empty until new members happen to be attached.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EmbeddingClusterEngine implements RoomStateHolder {
+
+    private static final String CLUSTER_ID_FIELD = "cluster_id";
+    private static final String VECTOR_FIELD = "centroid";
+
+    private final EmbeddingConfig embeddingConfig;
+    private final EmbeddingProvider embeddingProvider;
+    private final ClusterRepository clusterRepository;
+    private final MessageRepository messageRepository;
+    private final Map<String, RoomVectorIndex> indexes = new ConcurrentHashMap<>();
+
+    public record Routing(Map<UUID, UUID> clusterIdByMessageId, Map<UUID, float[]> vectorsByMessageId) {
+
+        static Routing empty() {
+            return new Routing(Map.of(), Map.of());
+        }
+    }
+
+    /**
+     * Embeds the pending messages and matches each one against the room's cluster centroids.
+     * Vectors are returned for every embedded message so callers can feed them back through
+     * {@link #learn} once the remaining messages have been labelled.
+     */
+    public Routing route(String roomId, List<Message> messages) {
+        if (!embeddingConfig.isEnabled() || messages.isEmpty()) {
+            return Routing.empty();
+        }
+
+        List<String> texts = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            texts.add(message.getContent() == null ? "" : message.getContent());
+        }
+        Optional<List<float[]>> embedded = embeddingProvider.embed(texts);
+        if (embedded.isEmpty()) {
+            return Routing.empty();
+        }
+
+        Map<UUID, float[]> vectors = new HashMap<>();
+        Map<UUID, UUID> assigned = new HashMap<>();
+        RoomVectorIndex index = indexFor(roomId);
+        for (int i = 0; i < messages.size(); i++) {
+            float[] vector = embedded.get().get(i);
+            if (isZero(vector)) {
+                continue;
+            }
+            UUID messageId = messages.get(i).getId();
+            vectors.put(messageId, vector);
+            if (index == null) {
+                continue;
+            }
+            try {
+                index.nearest(vector, embeddingConfig.getSimilarityThreshold())
+                    .ifPresent(clusterId -> assigned.put(messageId, clusterId));
+            } catch (IOException e) {
+                log.error("Vector lookup failed for room {}", roomId, e);
+            }
+        }
+
+        if (!assigned.isEmpty()) {
+            log.info("Routed {} of {} messages in room {} to existing clusters by embedding",
+                assigned.size(), messages.size(), roomId);
+        }
+        return new Routing(assigned, vectors);
+    }
+
+    /**
+     * Folds the vectors of messages that were attached to a cluster into that cluster's centroid.
+     */
+    public void learn(String roomId, UUID clusterId, List<Message> messages, Map<UUID, float[]> vectorsByMessageId) {
+        if (!embeddingConfig.isEnabled() || clusterId == null) {
+            return;
+        }
+        List<float[]> vectors = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            float[] vector = vectorsByMessageId.get(message.getId());
+            if (vector != null) {
+                vectors.add(vector);
+            }
+        }
+        if (vectors.isEmpty()) {
+            return;
+        }
+
+        // Rooms not yet routed are seeded from the database on their first lookup instead
+        RoomVectorIndex index = indexes.get(roomId);
+        if (index == null) {
+            return;
+        }
+        try {
+            index.add(clusterId, vectors);
+        } catch (IOException e) {
+            log.error("Failed to update centroid for cluster {} in room {}", clusterId, roomId, e);
+        }
+    }
+
+    /**
+     * Adds a merged cluster's centroid into the cluster it was folded into, so the survivor
+     * covers the vectors both clusters were learned from.
+     */
+    public void foldCluster(String roomId, UUID sourceId, UUID targetId) {
+        RoomVectorIndex index = indexes.get(roomId);
+        if (index == null) {
+            return;
+        }
+        try {
+            index.fold(sourceId, targetId);
+        } catch (IOException e) {
+            log.error("Failed to fold centroid of cluster {} into {} in room {}", sourceId, targetId, roomId, e);
+        }
+    }
+
+    public void forgetCluster(String roomId, UUID clusterId) {
+        RoomVectorIndex index = indexes.get(roomId);
+        if (index == null) {
+            return;
+        }
+        try {
+            index.remove(clusterId);
+        } catch (IOException e) {
+            log.error("Failed to drop centroid for cluster {} in room {}", clusterId, roomId, e);
+        }
+    }
+
+    @Override
+    public Set<String> roomIds() {
+        return Set.copyOf(indexes.keySet());
+    }
+
+    @Override
+    public long estimatedBytes(String roomId) {
+        RoomVectorIndex index = indexes.get(roomId);
+        return index == null ? 0 : index.ramBytesUsed();
+    }
+
+    @Override
+    public void evictRoom(String roomId) {
+        RoomVectorIndex index = indexes.remove(roomId);
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (String roomId : List.copyOf(indexes.keySet())) {
+            evictRoom(roomId);
+        }
+    }
+
+    private RoomVectorIndex indexFor(String roomId) {
+        RoomVectorIndex index = indexes.get(roomId);
+        if (index != null) {
+            return index;
+        }
+        Optional<RoomVectorIndex> seeded = seed(roomId);
+        if (seeded.isEmpty()) {
+            return null;
+        }
+        RoomVectorIndex existing = indexes.putIfAbsent(roomId, seeded.get());
+        if (existing != null) {
+            seeded.get().close();
+            return existing;
+        }
+        return seeded.get();
+    }
+
+    /**
+     * Builds a room's centroids from up to {@code seed-sample-per-cluster} recent messages of
+     * its largest clusters. Empty when the embedding call fails, so the next cycle retries.
+     */
+    private Optional<RoomVectorIndex> seed(String roomId) {
+        List<Cluster> clusters = new ArrayList<>(clusterRepository.findByRoomId(roomId));
+        clusters.sort(Comparator.comparingInt((Cluster cluster) ->
+            cluster.getMessageCount() == null ? 0 : cluster.getMessageCount()).reversed());
+        if (clusters.size() > embeddingConfig.getSeedMaxClusters()) {
+            clusters = clusters.subList(0, embeddingConfig.getSeedMaxClusters());
+        }
+
+        List<UUID> owners = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (Cluster cluster : clusters) {
+            List<Message> sample = messageRepository.findByClusterIdOrderByCreatedAtDesc(
+                cluster.getId(), PageRequest.of(0, embeddingConfig.getSeedSamplePerCluster()));
+            for (Message message : sample) {
+                if (message.getContent() != null && !message.getContent().isBlank()) {
+                    owners.add(cluster.getId());
+                    texts.add(message.getContent());
+                }
+            }
+        }
+
+        RoomVectorIndex index = new RoomVectorIndex();
+        if (texts.isEmpty()) {
+            return Optional.of(index);
+        }
+        Optional<List<float[]>> embedded = embeddingProvider.embed(texts);
+        if (embedded.isEmpty()) {
+            index.close();
+            return Optional.empty();
+        }
+
+        Map<UUID, List<float[]>> vectorsByCluster = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            float[] vector = embedded.get().get(i);
+            if (!isZero(vector)) {
+                vectorsByCluster.computeIfAbsent(owners.get(i), key -> new ArrayList<>()).add(vector);
+            }
+        }
+        try {
+            for (Map.Entry<UUID, List<float[]>> entry : vectorsByCluster.entrySet()) {
+                index.add(entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            log.error("Failed to seed vector index for room {}", roomId, e);
+            index.close();
+            return Optional.empty();
+        }
+        log.info("Seeded vector index for room {} with {} clusters from {} sampled messages",
+            roomId, vectorsByCluster.size(), texts.size());
+        return Optional.of(index);
+    }
+
+    private static boolean isZero(float[] vector) {
+        for (float value : vector) {
+            if (value != 0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * HNSW index holding one centroid document per cluster of a single room.
+     * Running sums live on the heap so centroids can be updated without reading vectors back.
+     */
+    private static final class RoomVectorIndex {
+
+        private final ByteBuffersDirectory directory = new ByteBuffersDirectory();
+        private final IndexWriter writer;
+        private final Map<UUID, Centroid> centroids = new HashMap<>();
+        private DirectoryReader reader;
+
+        RoomVectorIndex() {
+            try {
+                writer = new IndexWriter(directory, new IndexWriterConfig());
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open in-memory vector index", e);
+            }
+        }
+
+        synchronized Optional<UUID> nearest(float[] vector, double threshold) throws IOException {
+            if (centroids.isEmpty()) {
+                return Optional.empty();
+            }
+            refreshReader();
+            IndexSearcher searcher = new IndexSearcher(reader);
+            TopDocs top = searcher.search(new KnnFloatVectorQuery(VECTOR_FIELD, vector, 1), 1);
+            if (top.scoreDocs.length == 0) {
+                return Optional.empty();
+            }
+            ScoreDoc best = top.scoreDocs[0];
+            // Lucene scores cosine similarity as (1 + cos) / 2
+            double cosine = 2.0 * best.score - 1.0;
+            if (cosine < threshold) {
+                return Optional.empty();
+            }
+            String clusterId = searcher.storedFields().document(best.doc).get(CLUSTER_ID_FIELD);
+            return Optional.of(UUID.fromString(clusterId));
+        }
+
+        synchronized void add(UUID clusterId, List<float[]> vectors) throws IOException {
+            Centroid centroid = centroids.computeIfAbsent(clusterId, key -> new Centroid(vectors.get(0).length));
+            for (float[] vector : vectors) {
+                centroid.add(vector);
+            }
+            index(clusterId, centroid);
+        }
+
+        synchronized void fold(UUID sourceId, UUID targetId) throws IOException {
+            Centroid source = centroids.remove(sourceId);
+            if (source == null) {
+                return;
+            }
+            writer.deleteDocuments(new Term(CLUSTER_ID_FIELD, sourceId.toString()));
+            Centroid target = centroids.computeIfAbsent(targetId, key -> new Centroid(source.sum.length));
+            target.absorb(source);
+            index(targetId, target);
+        }
+
+        synchronized void remove(UUID clusterId) throws IOException {
+            if (centroids.remove(clusterId) != null) {
+                writer.deleteDocuments(new Term(CLUSTER_ID_FIELD, clusterId.toString()));
+            }
+        }
+
+        synchronized long ramBytesUsed() {
+            long bytes = directory.ramBytesUsed() + writer.ramBytesUsed();
+            for (Centroid centroid : centroids.values()) {
+                bytes += 64 + 4L * centroid.sum.length;
+            }
+            return bytes;
+        }
+
+        synchronized void close() {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+                writer.close();
+                directory.close();
+            } catch (IOException e) {
+                log.warn("Failed to close vector index", e);
+            }
+        }
+
+        private void index(UUID clusterId, Centroid centroid) throws IOException {
+            Document document = new Document();
+            document.add(new StringField(CLUSTER_ID_FIELD, clusterId.toString(), Field.Store.YES));
+            document.add(new KnnFloatVectorField(VECTOR_FIELD, centroid.mean(), VectorSimilarityFunction.COSINE));
+            writer.updateDocument(new Term(CLUSTER_ID_FIELD, clusterId.toString()), document);
+        }
+
+        private void refreshReader() throws IOException {
+            if (reader == null) {
+                reader = DirectoryReader.open(writer);
+                return;
+            }
+            DirectoryReader changed = DirectoryReader.openIfChanged(reader, writer);
+            if (changed != null) {
+                reader.close();
+                reader = changed;
+            }
+        }
+    }
+
+    private static final class Centroid {
+
+        private final float[] sum;
+        private int count;
+
+        Centroid(int dimensions) {
+            sum = new float[dimensions];
+        }
+
+        void add(float[] vector) {
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += vector[i];
+            }
+            count++;
+        }
+
+        void absorb(Centroid other) {
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += other.sum[i];
+            }
+            count += other.count;
+        }
+
+        float[] mean() {
+            float[] mean = new float[sum.length];
+            for (int i = 0; i < sum.length; i++) {
+                mean[i] = sum[i] / count;
+            }
+            return mean;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import com.supabase.qnasession.models.Cluster;
+import com.supabase.qnasession.models.Message;
+import com.supabase.qnasession.repository.ClusterRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scores pending messages against the titles and keywords of a room's existing clusters
+ * and assigns confident matches without asking the LLM. BM25 shortlists candidates; the
+ * decision uses the share of a cluster's label terms found in the message.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class KeywordClusterClassifier implements RoomStateHolder {
+
+    // One document per label; a merged cluster keeps its label under its own id
+    private static final String LABEL_ID_FIELD = "label_id";
+    private static final String TEXT_FIELD = "text";
+    private static final int MAX_QUERY_TERMS = 64;
+    private static final int MAX_CANDIDATES = 5;
+    private static final CharArraySet STOP_WORDS = new CharArraySet(List.of(
+        "a", "an", "and", "are", "about", "can", "could", "do", "does", "explain", "for", "how",
+        "i", "in", "is", "it", "of", "on", "or", "please", "the", "this", "to", "what", "when",
+        "where", "which", "who", "why", "with", "you"
+    ), true);
+
+    private final ClusteringConfig clusteringConfig;
+    private final ClusterRepository clusterRepository;
+    private final Analyzer analyzer = new StandardAnalyzer(STOP_WORDS);
+    private final Map<String, RoomKeywordIndex> indexes = new ConcurrentHashMap<>();
+
+    public Map<UUID, UUID> classify(String roomId, List<Message> messages) {
+        ClusteringConfig.Classifier settings = clusteringConfig.getClassifier();
+        if (!settings.isEnabled() || messages.isEmpty()) {
+            return Map.of();
+        }
+
+        RoomKeywordIndex index = indexes.computeIfAbsent(roomId, this::loadRoom);
+        Map<UUID, UUID> assigned = new HashMap<>();
+        for (Message message : messages) {
+            Set<String> terms = analyze(message.getContent());
+            if (terms.isEmpty()) {
+                continue;
+            }
+            try {
+                index.best(terms, settings.getMinScore(), settings.getMargin())
+                    .ifPresent(clusterId -> assigned.put(message.getId(), clusterId));
+            } catch (IOException e) {
+                log.error("Keyword lookup failed for room {}", roomId, e);
+                return assigned;
+            }
+        }
+
+        if (!assigned.isEmpty()) {
+            log.info("Routed {} of {} messages in room {} to existing clusters by keywords",
+                assigned.size(), messages.size(), roomId);
+        }
+        return assigned;
+    }
+
+    public void register(Cluster cluster) {
+        RoomKeywordIndex index = indexes.get(cluster.getRoomId());
+        if (index == null) {
+            // Not loaded yet; the next classify() call reads it from the database
+            return;
+        }
+        try {
+            index.put(cluster.getId(), describe(cluster));
+        } catch (IOException e) {
+            log.error("Failed to index cluster {} for room {}", cluster.getId(), cluster.getRoomId(), e);
+        }
+    }
+
+    /**
+     * Keeps the labels of a merged cluster as aliases of the cluster it was folded into, so
+     * messages phrased like the old title still reach the survivor.
+     */
+    public void foldCluster(String roomId, UUID sourceId, UUID targetId) {
+        RoomKeywordIndex index = indexes.get(roomId);
+        if (index != null) {
+            index.fold(sourceId, targetId);
+        }
+    }
+
+    public void forgetCluster(String roomId, UUID clusterId) {
+        RoomKeywordIndex index = indexes.get(roomId);
+        if (index == null) {
+            return;
+        }
+        try {
+            index.remove(clusterId);
+        } catch (IOException e) {
+            log.error("Failed to drop cluster {} from keyword index of room {}", clusterId, roomId, e);
+        }
+    }
+
+    @Override
+    public Set<String> roomIds() {
+        return Set.copyOf(indexes.keySet());
+    }
+
+    @Override
+    public long estimatedBytes(String roomId) {
+        RoomKeywordIndex index = indexes.get(roomId);
+        return index == null ? 0 : index.ramBytesUsed();
+    }
+
+    @Override
+    public void evictRoom(String roomId) {
+        RoomKeywordIndex index = indexes.remove(roomId);
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (String roomId : List.copyOf(indexes.keySet())) {
+            evictRoom(roomId);
+        }
+        analyzer.close();
+    }
+
+    private RoomKeywordIndex loadRoom(String roomId) {
+        RoomKeywordIndex index = new RoomKeywordIndex();
+        for (Cluster cluster : clusterRepository.findByRoomId(roomId)) {
+            try {
+                index.put(cluster.getId(), describe(cluster));
+            } catch (IOException e) {
+                log.error("Failed to index cluster {} for room {}", cluster.getId(), roomId, e);
+            }
+        }
+        return index;
+    }
+
+    private String describe(Cluster cluster) {
+        String title = cluster.getTitle() == null ? "" : cluster.getTitle();
+        String keywords = cluster.getKeywords() == null ? "" : cluster.getKeywords();
+        // The scheduler stores the topic in both columns; counting it twice would double every tf
+        if (keywords.isBlank() || keywords.trim().equalsIgnoreCase(title.trim())) {
+            return title;
+        }
+        return title + " " + keywords;
+    }
+
+    private Set<String> analyze(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(TEXT_FIELD, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken() && terms.size() < MAX_QUERY_TERMS) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            log.warn("Failed to analyze message text", e);
+        }
+        return terms;
+    }
+
+    private final class RoomKeywordIndex {
+
+        private final ByteBuffersDirectory directory = new ByteBuffersDirectory();
+        private final IndexWriter writer;
+        // Label id to the cluster it currently routes to
+        private final Map<UUID, UUID> clusterByLabel = new HashMap<>();
+        private final Map<UUID, Set<String>> labelTerms = new HashMap<>();
+        private DirectoryReader reader;
+
+        RoomKeywordIndex() {
+            try {
+                writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open in-memory keyword index", e);
+            }
+        }
+
+        /**
+         * BM25 picks the candidates; they are then scored by the share of their label terms the
+         * message contains, which unlike raw BM25 is comparable between rooms of any size.
+         */
+        synchronized Optional<UUID> best(Set<String> terms, double minScore, double margin) throws IOException {
+            if (clusterByLabel.isEmpty()) {
+                return Optional.empty();
+            }
+            refreshReader();
+
+            BooleanQuery.Builder query = new BooleanQuery.Builder();
+            for (String term : terms) {
+                query.add(new TermQuery(new Term(TEXT_FIELD, term)), BooleanClause.Occur.SHOULD);
+            }
+            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher.setSimilarity(new BM25Similarity());
+            TopDocs top = searcher.search(query.build(), MAX_CANDIDATES);
+
+            Map<UUID, Double> coverageByCluster = new HashMap<>();
+            for (ScoreDoc hit : top.scoreDocs) {
+                UUID labelId = UUID.fromString(searcher.storedFields().document(hit.doc).get(LABEL_ID_FIELD));
+                UUID clusterId = clusterByLabel.get(labelId);
+                Set<String> label = labelTerms.getOrDefault(labelId, Set.of());
+                if (clusterId == null || label.isEmpty()) {
+                    continue;
+                }
+                int matched = 0;
+                for (String term : label) {
+                    if (terms.contains(term)) {
+                        matched++;
+                    }
+                }
+                coverageByCluster.merge(clusterId, (double) matched / label.size(), Math::max);
+            }
+
+            UUID best = null;
+            double bestScore = 0;
+            double secondScore = -1;
+            for (Map.Entry<UUID, Double> entry : coverageByCluster.entrySet()) {
+                double coverage = entry.getValue();
+                if (best == null || coverage > bestScore) {
+                    if (best != null) {
+                        secondScore = Math.max(secondScore, bestScore);
+                    }
+                    best = entry.getKey();
+                    bestScore = coverage;
+                } else {
+                    secondScore = Math.max(secondScore, coverage);
+                }
+            }
+            // A lone candidate has to clear min-score by the margin as well
+            double floor = secondScore < 0 ? minScore : secondScore;
+            if (best == null || bestScore < minScore || bestScore < floor + margin) {
+                return Optional.empty();
+            }
+            return Optional.of(best);
+        }
+
+        synchronized void put(UUID clusterId, String text) throws IOException {
+            Document document = new Document();
+            document.add(new StringField(LABEL_ID_FIELD, clusterId.toString(), Field.Store.YES));
+            document.add(new TextField(TEXT_FIELD, text, Field.Store.NO));
+            writer.updateDocument(new Term(LABEL_ID_FIELD, clusterId.toString()), document);
+            clusterByLabel.put(clusterId, clusterId);
+            labelTerms.put(clusterId, analyze(text));
+        }
+
+        synchronized void fold(UUID sourceId, UUID targetId) {
+            clusterByLabel.replaceAll((labelId, clusterId) -> clusterId.equals(sourceId) ? targetId : clusterId);
+        }
+
+        synchronized void remove(UUID clusterId) throws IOException {
+            for (UUID labelId : List.copyOf(clusterByLabel.keySet())) {
+                if (clusterId.equals(clusterByLabel.get(labelId))) {
+                    clusterByLabel.remove(labelId);
+                    labelTerms.remove(labelId);
+                    writer.deleteDocuments(new Term(LABEL_ID_FIELD, labelId.toString()));
+                }
+            }
+        }
+
+        synchronized long ramBytesUsed() {
+            long bytes = directory.ramBytesUsed() + writer.ramBytesUsed() + 96L * clusterByLabel.size();
+            for (Set<String> label : labelTerms.values()) {
+                bytes += 96 + 64L * label.size();
+            }
+            return bytes;
+        }
+
+        synchronized void close() {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+                writer.close();
+                directory.close();
+            } catch (IOException e) {
+                log.warn("Failed to close keyword index", e);
+            }
+        }
+
+        private void refreshReader() throws IOException {
+            if (reader == null) {
+                reader = DirectoryReader.open(writer);
+                return;
+            }
+            DirectoryReader changed = DirectoryReader.openIfChanged(reader, writer);
+            if (changed != null) {
+                reader.close();
+                reader = changed;
+            }
+        }
+    }
+}
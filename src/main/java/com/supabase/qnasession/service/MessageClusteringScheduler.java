@@ -1,21 +1,28 @@
 package com.supabase.qnasession.service;
 
+import com.supabase.qnasession.config.ClusteringConfig;
+import com.supabase.qnasession.config.SupabaseConfig;
 import com.supabase.qnasession.models.Cluster;
 import com.supabase.qnasession.models.Message;
-import com.supabase.qnasession.models.Room;
 import com.supabase.qnasession.repository.ClusterRepository;
 import com.supabase.qnasession.repository.MessageRepository;
-import com.supabase.qnasession.repository.RoomRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -25,8 +32,19 @@ public class MessageClusteringScheduler {
 
     private final MessageRepository messageRepository;
     private final ClusterRepository clusterRepository;
-    private final RoomRepository roomRepository;
     private final TopicClustererService topicClustererService;
+    private final EmbeddingClusterEngine embeddingClusterEngine;
+    private final KeywordClusterClassifier keywordClusterClassifier;
+    private final WeightedFairScheduler weightedFairScheduler;
+    private final ClusteringConfig clusteringConfig;
+    private final AssignmentJournal assignmentJournal;
+    private final RoomStateRegistry roomStateRegistry;
+    private final SupabaseConfig supabaseConfig;
+    private final TopicCanonicalizer topicCanonicalizer;
+    private final MessagePreFilter messagePreFilter;
+    private final ClusterReadModel clusterReadModel;
+    private final RoomLifecycleService roomLifecycleService;
+    private final ClusterCycleLock clusterCycleLock;
 
     @Scheduled(
         fixedDelayString = "${clustering.poll-interval-ms:15000}",
@@ -34,107 +52,277 @@ public class MessageClusteringScheduler {
     )
     @Transactional
     public void pollAndCluster() {
-        List<String> roomIds = getRoomIds();
-        if (roomIds.isEmpty()) {
+        boolean unlockOnCompletion = clusterCycleLock.lockUntilCompletion();
+        try {
+            runCycle();
+        } finally {
+            if (!unlockOnCompletion) {
+                clusterCycleLock.unlock();
+            }
+        }
+    }
+
+    private void runCycle() {
+        List<String> roomIds = selectRooms();
+        if (roomIds.isEmpty() && !assignmentJournal.hasPending()) {
             log.debug("No rooms found for clustering");
             return;
         }
 
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    assignmentJournal.truncate();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        // Nothing from this cycle was saved; look at the same rooms again next time
+                        roomIds.forEach(roomStateRegistry::markPending);
+                    }
+                }
+            });
+        }
+
+        Map<UUID, float[]> vectorsByMessageId = new HashMap<>();
+        replayJournal(vectorsByMessageId);
+
+        Map<String, List<Message>> unlabelledByRoom = new LinkedHashMap<>();
         for (String roomId : roomIds) {
             if (roomId == null || roomId.isBlank()) {
                 continue;
             }
 
-            List<Message> pending = messageRepository
-                .findByRoomIdAndClusterIdIsNullOrderByCreatedAtAsc(roomId);
+            List<Message> pending = messageRepository.findByRoomIdAndClusterIdIsNullOrderByCreatedAtAsc(
+                roomId, PageRequest.of(0, clusteringConfig.getFairness().getMaxPendingPerRoom()));
 
             if (pending.isEmpty()) {
                 continue;
             }
+            if (pending.size() >= clusteringConfig.getFairness().getMaxPendingPerRoom()) {
+                roomStateRegistry.markPending(roomId);
+            }
 
-            Map<UUID, String> topicsByMessageId = topicClustererService.clusterTopics(roomId, pending);
-            if (topicsByMessageId.isEmpty()) {
-                log.warn("No topics returned for room {}; skipping clustering", roomId);
-                continue;
+            pending = routeLocally(roomId, pending, vectorsByMessageId);
+            if (!pending.isEmpty()) {
+                unlabelledByRoom.put(roomId, pending);
             }
+        }
 
-            Map<String, List<Message>> byTopic = new HashMap<>();
-            Map<String, String> displayTopicByKey = new HashMap<>();
-            for (Message message : pending) {
-                String topic = topicsByMessageId.get(message.getId());
-                if (topic == null || topic.isBlank()) {
+        Map<String, List<Message>> admittedByRoom = weightedFairScheduler.allocate(unlabelledByRoom);
+        if (!admittedByRoom.isEmpty()) {
+            Map<String, Map<UUID, String>> topicsByRoom = topicClustererService.clusterTopics(admittedByRoom);
+            for (Map.Entry<String, List<Message>> entry : admittedByRoom.entrySet()) {
+                String roomId = entry.getKey();
+                Map<UUID, String> topicsByMessageId = topicsByRoom.getOrDefault(roomId, Map.of());
+                if (topicsByMessageId.isEmpty()) {
+                    log.warn("No topics returned for room {}; skipping clustering", roomId);
                     continue;
                 }
-                String normalized = normalizeTopic(topic);
-                if (normalized.isBlank()) {
-                    continue;
+                applyTopics(roomId, entry.getValue(), topicsByMessageId, vectorsByMessageId);
+            }
+        }
+
+        for (Map.Entry<String, List<Message>> entry : unlabelledByRoom.entrySet()) {
+            if (entry.getValue().stream().anyMatch(message -> message.getClusterId() == null)) {
+                roomStateRegistry.markPending(entry.getKey());
+            }
+        }
+        messagePreFilter.expire();
+    }
+
+    private List<String> selectRooms() {
+        Set<String> pendingRooms = roomStateRegistry.drainPending();
+        if (supabaseConfig.getRealtime().isEnabled() && !roomStateRegistry.isFullScanDue()) {
+            return new ArrayList<>(pendingRooms);
+        }
+        roomStateRegistry.markFullScan();
+        Set<String> roomIds = new LinkedHashSet<>(getRoomIds());
+        roomIds.addAll(pendingRooms);
+        return new ArrayList<>(roomIds);
+    }
+
+    private void replayJournal(Map<UUID, float[]> vectorsByMessageId) {
+        Map<String, Map<UUID, String>> journaled = assignmentJournal.pending();
+        for (Map.Entry<String, Map<UUID, String>> entry : journaled.entrySet()) {
+            List<Message> unclustered = new ArrayList<>();
+            for (Message message : messageRepository.findAllById(entry.getValue().keySet())) {
+                if (message.getClusterId() == null) {
+                    unclustered.add(message);
                 }
-                displayTopicByKey.putIfAbsent(normalized, topic.trim());
-                byTopic.computeIfAbsent(normalized, key -> new ArrayList<>()).add(message);
             }
+            if (unclustered.isEmpty()) {
+                continue;
+            }
+            log.info("Replaying {} journaled assignments for room {}", unclustered.size(), entry.getKey());
+            applyTopics(entry.getKey(), unclustered, entry.getValue(), vectorsByMessageId);
+        }
+    }
+
+    private List<Message> routeLocally(String roomId, List<Message> pending, Map<UUID, float[]> vectorsByMessageId) {
+        List<Message> lowValue = messagePreFilter.lowValue(roomId, pending);
+        if (!lowValue.isEmpty()) {
+            String lowValueTopic = clusteringConfig.getPreFilter().getLowValueTopic();
+            Map<UUID, String> topicsByMessageId = new HashMap<>();
+            for (Message message : lowValue) {
+                topicsByMessageId.put(message.getId(), lowValueTopic);
+            }
+            applyTopics(roomId, lowValue, topicsByMessageId, vectorsByMessageId);
+            pending = pending.stream().filter(message -> message.getClusterId() == null).toList();
+            if (pending.isEmpty()) {
+                return pending;
+            }
+        }
+
+        EmbeddingClusterEngine.Routing routing = embeddingClusterEngine.route(roomId, pending);
+        vectorsByMessageId.putAll(routing.vectorsByMessageId());
+        pending = attachRouted(roomId, pending, routing.clusterIdByMessageId(), vectorsByMessageId);
+        if (pending.isEmpty()) {
+            return pending;
+        }
+
+        Map<UUID, UUID> classified = keywordClusterClassifier.classify(roomId, pending);
+        return attachRouted(roomId, pending, classified, vectorsByMessageId);
+    }
 
-            if (byTopic.isEmpty()) {
-                log.warn("No valid topic assignments for room {}; skipping clustering", roomId);
+    private void applyTopics(String roomId, List<Message> pending, Map<UUID, String> topicsByMessageId,
+                             Map<UUID, float[]> vectorsByMessageId) {
+        Map<String, List<Message>> byTopic = new HashMap<>();
+        Map<String, String> displayTopicByKey = new HashMap<>();
+        for (Message message : pending) {
+            String topic = topicsByMessageId.get(message.getId());
+            if (topic == null || topic.isBlank()) {
+                continue;
+            }
+            String normalized = topicCanonicalizer.canonicalize(roomId, topic);
+            if (normalized.isBlank()) {
                 continue;
             }
+            displayTopicByKey.putIfAbsent(normalized, topic.trim());
+            byTopic.computeIfAbsent(normalized, key -> new ArrayList<>()).add(message);
+        }
 
-            for (Map.Entry<String, List<Message>> entry : byTopic.entrySet()) {
-                String topicKey = entry.getKey();
-                String topic = displayTopicByKey.getOrDefault(topicKey, topicKey);
-                List<Message> bucket = entry.getValue();
-
-                Cluster cluster = clusterRepository
-                    .findFirstByRoomIdAndTitle(roomId, topic)
-                    .orElseGet(() -> {
-                        Cluster created = new Cluster();
-                        created.setRoomId(roomId);
-                        created.setTitle(topic);
-                        created.setMessageCount(0);
-                        return created;
-                    });
-
-                int currentCount = cluster.getMessageCount() == null ? 0 : cluster.getMessageCount();
-                cluster.setKeywords(topic);
-                cluster.setMessageCount(currentCount + bucket.size());
-                cluster = clusterRepository.save(cluster);
-
-                UUID clusterId = cluster.getId();
-                for (Message message : bucket) {
-                    message.setClusterId(clusterId);
-                }
-                messageRepository.saveAll(bucket);
+        if (byTopic.isEmpty()) {
+            log.warn("No valid topic assignments for room {}; skipping clustering", roomId);
+            return;
+        }
+
+        Map<String, UUID> clusterKeys = clusterKeysFor(roomId);
+        for (Map.Entry<String, List<Message>> entry : byTopic.entrySet()) {
+            String topicKey = entry.getKey();
+            String topic = displayTopicByKey.getOrDefault(topicKey, topicKey);
+            List<Message> bucket = entry.getValue();
 
-                log.info("Clustered {} messages for room {} into topic '{}' (cluster {})",
-                    bucket.size(), roomId, topic, clusterId);
+            UUID knownClusterId = clusterKeys.get(topicKey);
+            Optional<Cluster> known = knownClusterId == null
+                ? Optional.empty()
+                : clusterRepository.findById(knownClusterId);
+            Cluster cluster = known
+                .or(() -> clusterRepository.findFirstByRoomIdAndTitle(roomId, topic))
+                .orElseGet(() -> {
+                    Cluster created = new Cluster();
+                    created.setRoomId(roomId);
+                    created.setTitle(topic);
+                    created.setMessageCount(0);
+                    return created;
+                });
+
+            int currentCount = cluster.getMessageCount() == null ? 0 : cluster.getMessageCount();
+            cluster.setKeywords(topic);
+            cluster.setMessageCount(currentCount + bucket.size());
+            boolean created = cluster.getId() == null;
+            cluster = clusterRepository.save(cluster);
+            if (created) {
+                keywordClusterClassifier.register(cluster);
+            }
+
+            UUID clusterId = cluster.getId();
+            roomStateRegistry.rememberCluster(roomId, topicKey, clusterId);
+            clusterReadModel.markDirty(roomId);
+            for (Message message : bucket) {
+                message.setClusterId(clusterId);
             }
+            messageRepository.saveAll(bucket);
+            embeddingClusterEngine.learn(roomId, clusterId, bucket, vectorsByMessageId);
+
+            log.info("Clustered {} messages for room {} into topic '{}' (cluster {})",
+                bucket.size(), roomId, topic, clusterId);
         }
     }
 
-    private List<String> getRoomIds() {
-        List<Room> rooms = roomRepository.findAll();
-        if (!rooms.isEmpty()) {
-            List<String> ids = new ArrayList<>(rooms.size());
-            for (Room room : rooms) {
-                if (room != null && room.getId() != null) {
-                    ids.add(room.getId());
-                }
+    private List<Message> attachRouted(String roomId, List<Message> pending, Map<UUID, UUID> clusterIdByMessageId,
+                                       Map<UUID, float[]> vectorsByMessageId) {
+        if (clusterIdByMessageId.isEmpty()) {
+            return pending;
+        }
+
+        Map<UUID, List<Message>> byCluster = new HashMap<>();
+        List<Message> unmatched = new ArrayList<>();
+        for (Message message : pending) {
+            UUID clusterId = clusterIdByMessageId.get(message.getId());
+            if (clusterId == null) {
+                unmatched.add(message);
+            } else {
+                byCluster.computeIfAbsent(clusterId, key -> new ArrayList<>()).add(message);
+            }
+        }
+
+        for (Map.Entry<UUID, List<Message>> entry : byCluster.entrySet()) {
+            UUID clusterId = entry.getKey();
+            List<Message> bucket = entry.getValue();
+            Optional<Cluster> existing = clusterRepository.findById(clusterId);
+            if (existing.isEmpty()) {
+                // Cluster was deleted behind our back; let the LLM label these again
+                embeddingClusterEngine.forgetCluster(roomId, clusterId);
+                keywordClusterClassifier.forgetCluster(roomId, clusterId);
+                roomStateRegistry.forgetCluster(roomId, clusterId);
+                unmatched.addAll(bucket);
+                continue;
             }
-            return ids;
+
+            Cluster cluster = existing.get();
+            int currentCount = cluster.getMessageCount() == null ? 0 : cluster.getMessageCount();
+            cluster.setMessageCount(currentCount + bucket.size());
+            clusterRepository.save(cluster);
+            clusterReadModel.markDirty(roomId);
+
+            for (Message message : bucket) {
+                message.setClusterId(clusterId);
+            }
+            messageRepository.saveAll(bucket);
+            embeddingClusterEngine.learn(roomId, clusterId, bucket, vectorsByMessageId);
+
+            log.info("Attached {} messages for room {} to existing cluster '{}' ({})",
+                bucket.size(), roomId, cluster.getTitle(), clusterId);
         }
-        return messageRepository.findDistinctRoomIds();
+        return unmatched;
     }
 
-    private String normalizeTopic(String topic) {
-        String trimmed = topic.trim();
-        int end = trimmed.length();
-        while (end > 0) {
-            char ch = trimmed.charAt(end - 1);
-            if (Character.isLetterOrDigit(ch) || ch == ' ') {
-                break;
+    private Map<String, UUID> clusterKeysFor(String roomId) {
+        Map<String, UUID> keys = roomStateRegistry.clusterKeys(roomId);
+        if (keys != null) {
+            return keys;
+        }
+        Map<String, UUID> loaded = new HashMap<>();
+        for (Cluster cluster : clusterRepository.findByRoomId(roomId)) {
+            if (cluster.getTitle() != null) {
+                loaded.putIfAbsent(topicCanonicalizer.canonicalize(roomId, cluster.getTitle()), cluster.getId());
             }
-            end--;
         }
-        String cleaned = trimmed.substring(0, end).replaceAll("\\s+", " ").trim();
-        return cleaned.toLowerCase();
+        roomStateRegistry.putClusterKeys(roomId, loaded);
+        return loaded;
+    }
+
+    /**
+     * Active rooms plus every room that still has unclustered messages, which catches inserts
+     * whose realtime events were missed however old they are. Idleness only decides which
+     * rooms keep in-memory state; it never leaves rows unclustered.
+     */
+    private List<String> getRoomIds() {
+        Set<String> roomIds = roomLifecycleService.activeRooms();
+        roomIds.addAll(messageRepository.findRoomIdsWithUnclustered());
+        return new ArrayList<>(roomIds);
     }
 }
@@ -0,0 +1,431 @@
+package com.supabase.qnasession.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.supabase.qnasession.config.IngestConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+/**
+ * High-volume message import for integrations. The request body is parsed as a stream and rows
+ * are validated as they arrive and written in one transaction with PostgreSQL COPY (large
+ * batches) or multi-row INSERT (small batches); any invalid row rolls the whole batch back. The
+ * room is then queued for clustering directly instead of waiting for the realtime echo.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MessageIngestService {
+
+    private static final String COLUMNS = "id, room_id, user_id, user_name, content, created_at, votes";
+    private static final int COLUMN_COUNT = 7;
+    // Stays well under PostgreSQL's 65535 bind parameter limit
+    private static final int INSERT_ROWS_PER_STATEMENT = 1000;
+    private static final int COPY_BUFFER_BYTES = 256 * 1024;
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final Set<String> FIELDS = Set.of("id", "user_id", "user_name", "content", "created_at");
+
+    private final IngestConfig ingestConfig;
+    private final DataSource dataSource;
+    private final RoomStateRegistry roomStateRegistry;
+    private final RoomLifecycleService roomLifecycleService;
+
+    private Semaphore slots;
+    private JsonFactory jsonFactory;
+
+    public record IngestMessage(UUID id, UUID userId, String userName, String content, Instant createdAt) {
+    }
+
+    public record ValidationError(int index, String reason) {
+    }
+
+    /**
+     * Raised when rows collide with messages that already exist.
+     */
+    public static class DuplicateMessageException extends RuntimeException {
+
+        private final List<UUID> ids;
+
+        public DuplicateMessageException(List<UUID> ids) {
+            super("Messages already exist: " + ids);
+            this.ids = ids;
+        }
+
+        public List<UUID> getIds() {
+            return ids;
+        }
+    }
+
+    /**
+     * Raised when the body is not a valid batch; nothing has been written.
+     */
+    public static class IngestValidationException extends RuntimeException {
+
+        private final List<ValidationError> errors;
+
+        public IngestValidationException(List<ValidationError> errors) {
+            super("Invalid batch: " + errors);
+            this.errors = errors;
+        }
+
+        public List<ValidationError> getErrors() {
+            return errors;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(Math.max(1, ingestConfig.getMaxConcurrent()));
+        // Caps any single string, so one oversized value cannot be buffered whole
+        jsonFactory = JsonFactory.builder()
+            .streamReadConstraints(StreamReadConstraints.builder()
+                .maxStringLength(Math.max(1024, 2 * ingestConfig.getMaxContentLength()))
+                .build())
+            .build();
+    }
+
+    /**
+     * Reserves one of the {@code ingest.max-concurrent} slots; callers release it with
+     * {@link #releaseSlot()} once the request is done.
+     */
+    public boolean tryAcquireSlot() {
+        return slots.tryAcquire();
+    }
+
+    public void releaseSlot() {
+        slots.release();
+    }
+
+    /**
+     * Parses a JSON array of messages from the request body and writes it in one transaction,
+     * returning the number of rows inserted. Rows are streamed into COPY as they are parsed once
+     * the batch reaches the COPY threshold, so memory does not grow with the batch.
+     */
+    public int ingest(String roomId, InputStream body) throws IOException, SQLException {
+        Instant now = Instant.now();
+        long started = System.nanoTime();
+        List<ValidationError> errors = new ArrayList<>();
+        Set<UUID> ids = new HashSet<>();
+        List<IngestMessage> buffered = new ArrayList<>();
+        int count = 0;
+
+        Connection connection = null;
+        CopyWriter copy = null;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IngestValidationException(List.of(new ValidationError(-1, "body must be a JSON array")));
+            }
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token == null) {
+                    throw new IngestValidationException(List.of(new ValidationError(-1, "unexpected end of body")));
+                }
+                int index = count++;
+                if (count > ingestConfig.getMaxBatchSize()) {
+                    errors.add(new ValidationError(-1, "batch exceeds " + ingestConfig.getMaxBatchSize() + " messages"));
+                    break;
+                }
+                IngestMessage message = read(parser, token, index, errors);
+                if (message == null || !validate(index, message, ids, errors)) {
+                    if (errors.size() >= MAX_REPORTED_ERRORS) {
+                        break;
+                    }
+                    continue;
+                }
+                if (!errors.isEmpty()) {
+                    // Keep parsing to report further errors, but write nothing more
+                    continue;
+                }
+
+                IngestMessage row = new IngestMessage(
+                    message.id() == null ? UUID.randomUUID() : message.id(),
+                    message.userId(),
+                    message.userName(),
+                    message.content(),
+                    message.createdAt() == null ? now : message.createdAt()
+                );
+                if (copy != null) {
+                    copy.write(row);
+                    continue;
+                }
+                buffered.add(row);
+                if (buffered.size() >= ingestConfig.getCopyThreshold()) {
+                    // Large enough for COPY; take a connection only now that the batch is known to be big
+                    connection = open(connection);
+                    copy = new CopyWriter(connection, roomId);
+                    for (IngestMessage pending : buffered) {
+                        copy.write(pending);
+                    }
+                    buffered.clear();
+                }
+            }
+            if (count == 0) {
+                errors.add(new ValidationError(-1, "batch is empty"));
+            }
+            if (!errors.isEmpty()) {
+                throw new IngestValidationException(errors);
+            }
+
+            if (copy != null) {
+                copy.finish();
+            } else {
+                connection = open(connection);
+                insert(connection, roomId, buffered);
+            }
+            connection.commit();
+        } catch (Exception e) {
+            if (copy != null) {
+                copy.cancel();
+            }
+            if (connection != null) {
+                connection.rollback();
+            }
+            if (e instanceof IngestValidationException validation) {
+                throw validation;
+            }
+            if (e instanceof JsonProcessingException json) {
+                throw new IngestValidationException(List.of(
+                    new ValidationError(count - 1, "malformed JSON: " + json.getOriginalMessage())));
+            }
+            if (connection != null && isUniqueViolation(e)) {
+                throw new DuplicateMessageException(existingIds(connection, ids));
+            }
+            throw e instanceof SQLException sql ? sql : new SQLException("Bulk ingest failed", e);
+        } finally {
+            if (connection != null) {
+                connection.setAutoCommit(true);
+                connection.close();
+            }
+        }
+
+        roomLifecycleService.touch(roomId);
+        roomStateRegistry.markPending(roomId);
+        log.info("Ingested {} messages into room {} in {} ms",
+            count, roomId, (System.nanoTime() - started) / 1_000_000);
+        return count;
+    }
+
+    private Connection open(Connection connection) throws SQLException {
+        if (connection != null) {
+            return connection;
+        }
+        Connection opened = dataSource.getConnection();
+        opened.setAutoCommit(false);
+        return opened;
+    }
+
+    /**
+     * Reads one array element field by field; the shared ObjectMapper has no java.time support
+     * and binding would materialise unknown nested values.
+     */
+    private static IngestMessage read(JsonParser parser, JsonToken token, int index, List<ValidationError> errors)
+        throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            errors.add(new ValidationError(index, "message must be an object"));
+            return null;
+        }
+        UUID id = null;
+        UUID userId = null;
+        String userName = null;
+        String content = null;
+        Instant createdAt = null;
+        try {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    if (FIELDS.contains(field)) {
+                        throw new IllegalArgumentException(field + " must be a scalar");
+                    }
+                    continue;
+                }
+                String text = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                switch (field) {
+                    case "id" -> id = text == null ? null : UUID.fromString(text);
+                    case "user_id" -> userId = text == null ? null : UUID.fromString(text);
+                    case "user_name" -> userName = text;
+                    case "content" -> content = text;
+                    case "created_at" -> createdAt = text == null ? null : Instant.parse(text);
+                    default -> {
+                    }
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // Skip the rest of this element so parsing resumes at the next one
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                parser.nextToken();
+                parser.skipChildren();
+            }
+            errors.add(new ValidationError(index, "invalid value: " + e.getMessage()));
+            return null;
+        }
+        return new IngestMessage(id, userId, userName, content, createdAt);
+    }
+
+    private boolean validate(int index, IngestMessage message, Set<UUID> ids, List<ValidationError> errors) {
+        String reason = null;
+        if (message.id() != null && !ids.add(message.id())) {
+            reason = "duplicate id " + message.id();
+        } else if (message.content() == null || message.content().isBlank()) {
+            reason = "content is required";
+        } else if (message.content().length() > ingestConfig.getMaxContentLength()) {
+            reason = "content exceeds " + ingestConfig.getMaxContentLength() + " characters";
+        } else if (message.content().indexOf('\0') >= 0
+            || (message.userName() != null && message.userName().indexOf('\0') >= 0)) {
+            reason = "text contains NUL characters";
+        }
+        if (reason != null) {
+            errors.add(new ValidationError(index, reason));
+        }
+        return reason == null;
+    }
+
+    /**
+     * Streams rows into a COPY through a bounded buffer rather than building one CSV string.
+     */
+    private static final class CopyWriter {
+
+        private final PGCopyOutputStream copy;
+        private final Writer csv;
+        private final String roomId;
+
+        CopyWriter(Connection connection, String roomId) throws SQLException {
+            this.copy = new PGCopyOutputStream(connection.unwrap(PGConnection.class),
+                "COPY messages (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)", COPY_BUFFER_BYTES);
+            this.csv = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8), COPY_BUFFER_BYTES);
+            this.roomId = roomId;
+        }
+
+        void write(IngestMessage row) throws IOException {
+            csv.write(row.id().toString());
+            csv.write(',');
+            writeCsv(csv, roomId);
+            csv.write(',');
+            if (row.userId() != null) {
+                csv.write(row.userId().toString());
+            }
+            csv.write(',');
+            if (row.userName() != null) {
+                writeCsv(csv, row.userName());
+            }
+            csv.write(',');
+            writeCsv(csv, row.content());
+            csv.write(',');
+            csv.write(row.createdAt().toString());
+            csv.write(",0\n");
+        }
+
+        void finish() throws IOException {
+            // Closing ends the COPY and surfaces any server-side error
+            csv.close();
+        }
+
+        void cancel() {
+            try {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to cancel COPY", e);
+            }
+        }
+    }
+
+    private void insert(Connection connection, String roomId, List<IngestMessage> rows) throws SQLException {
+        for (int start = 0; start < rows.size(); start += INSERT_ROWS_PER_STATEMENT) {
+            List<IngestMessage> chunk = rows.subList(start, Math.min(rows.size(), start + INSERT_ROWS_PER_STATEMENT));
+            StringBuilder sql = new StringBuilder("insert into messages (" + COLUMNS + ") values ");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "" : ",").append("(?, ?, ?, ?, ?, ?, ?)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                int parameter = 1;
+                for (IngestMessage row : chunk) {
+                    statement.setObject(parameter++, row.id());
+                    statement.setString(parameter++, roomId);
+                    if (row.userId() == null) {
+                        statement.setNull(parameter++, Types.OTHER);
+                    } else {
+                        statement.setObject(parameter++, row.userId());
+                    }
+                    statement.setString(parameter++, row.userName());
+                    statement.setString(parameter++, row.content());
+                    statement.setTimestamp(parameter++, Timestamp.from(row.createdAt()));
+                    statement.setInt(parameter++, 0);
+                }
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private static void writeCsv(Writer csv, String value) throws IOException {
+        // Always quote so empty strings stay distinct from NULL
+        csv.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') {
+                csv.write('"');
+            }
+            csv.write(ch);
+        }
+        csv.write('"');
+    }
+
+    private static boolean isUniqueViolation(Throwable error) {
+        // COPY failures surface as an IOException wrapping the server's SQLException
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && UNIQUE_VIOLATION.equals(sql.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<UUID> existingIds(Connection connection, Set<UUID> requested) throws SQLException {
+        List<UUID> existing = new ArrayList<>();
+        if (requested.isEmpty()) {
+            return existing;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("select id from messages where id = any(?)")) {
+            statement.setArray(1, connection.createArrayOf("uuid", requested.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    existing.add(resultSet.getObject(1, UUID.class));
+                }
+            }
+        }
+        connection.commit();
+        return existing;
+    }
+}
@@ -0,0 +1,161 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import com.supabase.qnasession.models.Message;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap local check that keeps obviously non-question messages ("hi", "+1", emoji-only, a user
+ * repeating themselves or flooding the room) out of embedding and LLM prompts.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MessagePreFilter {
+
+    private static final long RATE_WINDOW_MS = 60_000;
+    // Acronyms ("JWT", "RAG") and letter/digit mixes ("k8s", "S3") are short but meaningful
+    private static final Pattern TECHNICAL_TOKEN = Pattern.compile("(?<![\\p{L}\\p{N}])"
+        + "(?:\\p{Lu}{2,}|(?=[\\p{L}\\p{N}]*\\p{N})(?=[\\p{L}\\p{N}]*\\p{L})[\\p{L}\\p{N}]+)"
+        + "(?![\\p{L}\\p{N}])");
+
+    private record UserKey(String roomId, UUID userId) {
+    }
+
+    private final ClusteringConfig clusteringConfig;
+    // Per room, so the same user asking in two rooms is neither a repeat nor a flood
+    private final Map<UserKey, UserActivity> activityByUser = new ConcurrentHashMap<>();
+    private volatile Set<String> acknowledgements;
+
+    /**
+     * @return The subset of messages that should go straight to the room's low-value cluster
+     */
+    public List<Message> lowValue(String roomId, List<Message> messages) {
+        ClusteringConfig.PreFilter settings = clusteringConfig.getPreFilter();
+        if (!settings.isEnabled() || messages.isEmpty()) {
+            return List.of();
+        }
+
+        List<Message> lowValue = new ArrayList<>();
+        for (Message message : messages) {
+            if (isLowValue(roomId, message, settings)) {
+                lowValue.add(message);
+            }
+        }
+        if (!lowValue.isEmpty()) {
+            log.info("Pre-filtered {} of {} pending messages in room {} as low-value",
+                lowValue.size(), messages.size(), roomId);
+        }
+        return lowValue;
+    }
+
+    /**
+     * Drops activity older than the longest window so per-user state does not grow without bound.
+     */
+    public void expire() {
+        long horizon = System.currentTimeMillis()
+            - Math.max(RATE_WINDOW_MS, clusteringConfig.getPreFilter().getRepeatWindowMs());
+        activityByUser.values().removeIf(activity -> activity.expire(horizon));
+    }
+
+    private boolean isLowValue(String roomId, Message message, ClusteringConfig.PreFilter settings) {
+        String normalized = normalize(message.getContent());
+        boolean tooShort = normalized.replace(" ", "").length() < settings.getMinLength()
+            && !TECHNICAL_TOKEN.matcher(message.getContent() == null ? "" : message.getContent()).find();
+        boolean lowValue = tooShort || acknowledgements(settings).contains(normalized);
+
+        if (message.getUserId() == null) {
+            return lowValue;
+        }
+        long at = message.getCreatedAt() == null
+            ? System.currentTimeMillis()
+            : message.getCreatedAt().toEpochMilli();
+        UserActivity activity = activityByUser.computeIfAbsent(
+            new UserKey(roomId, message.getUserId()), key -> new UserActivity());
+        synchronized (activity) {
+            boolean repeated = activity.seen(message.getId(), normalized, at, settings.getRepeatWindowMs());
+            boolean flooding = activity.rate(message.getId(), at) > settings.getMaxMessagesPerUserPerMinute();
+            return lowValue || repeated || flooding;
+        }
+    }
+
+    private Set<String> acknowledgements(ClusteringConfig.PreFilter settings) {
+        Set<String> current = acknowledgements;
+        if (current == null) {
+            current = new HashSet<>();
+            for (String phrase : settings.getAcknowledgements()) {
+                current.add(normalize(phrase));
+            }
+            acknowledgements = current;
+        }
+        return current;
+    }
+
+    private static String normalize(String content) {
+        if (content == null) {
+            return "";
+        }
+        // Keep letters and digits only, so emoji and punctuation collapse to nothing
+        return content.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private static final class UserActivity {
+
+        // Keyed by message id so a message re-examined on a later cycle is not counted twice
+        private final Map<UUID, Long> recentMessages = new HashMap<>();
+        private final Map<String, UUID> firstMessageByText = new HashMap<>();
+        private final Map<String, Long> firstSeenByText = new HashMap<>();
+
+        boolean seen(UUID messageId, String text, long at, long windowMs) {
+            if (text.isEmpty()) {
+                return false;
+            }
+            UUID first = firstMessageByText.get(text);
+            Long firstAt = firstSeenByText.get(text);
+            if (first == null || firstAt == null || at - firstAt > windowMs) {
+                firstMessageByText.put(text, messageId);
+                firstSeenByText.put(text, at);
+                return false;
+            }
+            return !first.equals(messageId);
+        }
+
+        int rate(UUID messageId, long at) {
+            recentMessages.put(messageId, at);
+            int count = 0;
+            for (long other : recentMessages.values()) {
+                if (other <= at && at - other <= RATE_WINDOW_MS) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized boolean expire(long horizon) {
+            recentMessages.values().removeIf(at -> at < horizon);
+            Iterator<Map.Entry<String, Long>> entries = firstSeenByText.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Long> entry = entries.next();
+                if (entry.getValue() < horizon) {
+                    firstMessageByText.remove(entry.getKey());
+                    entries.remove();
+                }
+            }
+            return recentMessages.isEmpty() && firstSeenByText.isEmpty();
+        }
+    }
+}
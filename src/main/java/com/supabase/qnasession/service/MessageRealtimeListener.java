@@ -17,6 +17,8 @@ import java.util.Map;
 public class MessageRealtimeListener implements RealtimeChangeListener {
     
     private final SupabaseRealtimeService realtimeService;
+    private final RoomStateRegistry roomStateRegistry;
+    private final RoomLifecycleService roomLifecycleService;
     
     @PostConstruct
     public void init() {
@@ -40,10 +42,11 @@ public class MessageRealtimeListener implements RealtimeChangeListener {
             // For example:
             // - Send notification to connected WebSocket clients
             // - Update cache
-            // - Trigger clustering algorithm
             // - Send email notifications
             
             log.info("Message from {} in room {}: {}", userName, roomId, content);
+            roomLifecycleService.touch(roomId);
+            roomStateRegistry.markPending(roomId);
         }
     }
     
@@ -0,0 +1,30 @@
+package com.supabase.qnasession.service;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Progress of a re-cluster job; also the on-disk checkpoint format
+ */
+@Data
+public class ReclusterJob {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String COMPLETED_WITH_FAILURES = "COMPLETED_WITH_FAILURES";
+
+    private String id;
+    private List<String> roomIds = new ArrayList<>();
+    private Long fromEpochMs;
+    private Long toEpochMs;
+    private Set<String> completedRooms = new LinkedHashSet<>();
+    private Set<String> failedRooms = new LinkedHashSet<>();
+    private long messagesRelabelled;
+    private String status = RUNNING;
+    private long createdAt;
+    private long updatedAt;
+}
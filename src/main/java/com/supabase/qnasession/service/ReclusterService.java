@@ -0,0 +1,346 @@
+package com.supabase.qnasession.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supabase.qnasession.config.ClusteringConfig;
+import com.supabase.qnasession.models.Cluster;
+import com.supabase.qnasession.models.Message;
+import com.supabase.qnasession.repository.ClusterRepository;
+import com.supabase.qnasession.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Re-clusters historical rooms from scratch, e.g. after a prompt or model change. Rooms are
+ * labelled in parallel under a shared request throttle. A room's messages are labelled in
+ * keyset-paged chunks and staged in memory; the new clusters are then written and the old ones
+ * retired in one transaction that holds {@link ClusterCycleLock}, so readers never see a
+ * half-migrated room and a room that fails leaves the database untouched. Completed rooms are
+ * checkpointed to disk so an interrupted job resumes where it stopped.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReclusterService {
+
+    private static final int UPDATE_BATCH_SIZE = 1000;
+
+    private final ClusteringConfig clusteringConfig;
+    private final MessageRepository messageRepository;
+    private final ClusterRepository clusterRepository;
+    private final TopicClustererService topicClustererService;
+    private final ClusterMergeService clusterMergeService;
+    private final EmbeddingClusterEngine embeddingClusterEngine;
+    private final KeywordClusterClassifier keywordClusterClassifier;
+    private final RoomStateRegistry roomStateRegistry;
+    private final ClusterReadModel clusterReadModel;
+    private final TopicCanonicalizer topicCanonicalizer;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final ClusterCycleLock clusterCycleLock;
+
+    private final Map<String, ReclusterJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private long nextRequestAt;
+
+    private record StagedRoom(Map<String, List<UUID>> idsByKey, Map<String, String> displayTopicByKey,
+                              Map<UUID, Map<String, Integer>> keysByOldCluster) {
+
+        long messageCount() {
+            long count = 0;
+            for (List<UUID> ids : idsByKey.values()) {
+                count += ids.size();
+            }
+            return count;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeJobs() {
+        if (!clusteringConfig.getBackfill().isResumeOnStartup()) {
+            return;
+        }
+        Path dir = Path.of(clusteringConfig.getBackfill().getCheckpointDir());
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".json")).toList()) {
+                ReclusterJob job = objectMapper.readValue(file.toFile(), ReclusterJob.class);
+                jobs.put(job.getId(), job);
+                if (ReclusterJob.RUNNING.equals(job.getStatus())) {
+                    log.info("Resuming re-cluster job {} ({} of {} rooms done)",
+                        job.getId(), job.getCompletedRooms().size(), job.getRoomIds().size());
+                    job.getFailedRooms().clear();
+                    run(job);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to read re-cluster checkpoints from {}", dir, e);
+        }
+    }
+
+    /**
+     * Starts a job over the given rooms, or over every room with messages in the range when no
+     * rooms are given. Either end of the range may be null.
+     */
+    public ReclusterJob start(List<String> roomIds, Instant from, Instant to) {
+        Instant start = from == null ? Instant.EPOCH : from;
+        Instant end = to == null ? Instant.now() : to;
+
+        ReclusterJob job = new ReclusterJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setFromEpochMs(start.toEpochMilli());
+        job.setToEpochMs(end.toEpochMilli());
+        job.setRoomIds(roomIds == null || roomIds.isEmpty()
+            ? messageRepository.findRoomIdsWithMessagesBetween(start, end)
+            : List.copyOf(roomIds));
+        job.setCreatedAt(System.currentTimeMillis());
+        jobs.put(job.getId(), job);
+        checkpoint(job);
+
+        log.info("Starting re-cluster job {} over {} rooms", job.getId(), job.getRoomIds().size());
+        run(job);
+        return job;
+    }
+
+    public Optional<ReclusterJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            // Unfinished rooms stay out of the checkpoint and are redone on resume
+            executor.shutdownNow();
+        }
+    }
+
+    private void run(ReclusterJob job) {
+        List<CompletableFuture<Void>> rooms = new ArrayList<>();
+        for (String roomId : job.getRoomIds()) {
+            if (job.getCompletedRooms().contains(roomId)) {
+                continue;
+            }
+            rooms.add(CompletableFuture.runAsync(() -> reclusterRoom(job, roomId), executor()));
+        }
+        CompletableFuture.allOf(rooms.toArray(CompletableFuture[]::new)).whenComplete((ignored, error) -> {
+            synchronized (job) {
+                if (job.getCompletedRooms().size() + job.getFailedRooms().size() < job.getRoomIds().size()) {
+                    // Interrupted by shutdown; leave the job RUNNING so it resumes
+                    return;
+                }
+                job.setStatus(job.getFailedRooms().isEmpty()
+                    ? ReclusterJob.COMPLETED
+                    : ReclusterJob.COMPLETED_WITH_FAILURES);
+            }
+            checkpoint(job);
+            log.info("Re-cluster job {} finished: {} rooms done, {} failed, {} messages relabelled",
+                job.getId(), job.getCompletedRooms().size(), job.getFailedRooms().size(), job.getMessagesRelabelled());
+        });
+    }
+
+    private void reclusterRoom(ReclusterJob job, String roomId) {
+        try {
+            StagedRoom staged = label(roomId, Instant.ofEpochMilli(job.getFromEpochMs()),
+                Instant.ofEpochMilli(job.getToEpochMs()));
+            if (staged.messageCount() > 0) {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    // Cycles and compaction write the same clusters; keep them out until we commit
+                    if (!clusterCycleLock.lockUntilCompletion()) {
+                        clusterCycleLock.unlock();
+                        throw new IllegalStateException("Re-cluster writes need a transaction");
+                    }
+                    apply(roomId, staged);
+                });
+            }
+            embeddingClusterEngine.evictRoom(roomId);
+            keywordClusterClassifier.evictRoom(roomId);
+            roomStateRegistry.evictRoom(roomId);
+            clusterReadModel.markDirty(roomId);
+
+            synchronized (job) {
+                job.getCompletedRooms().add(roomId);
+                job.setMessagesRelabelled(job.getMessagesRelabelled() + staged.messageCount());
+            }
+            checkpoint(job);
+            log.info("Re-clustered {} messages in room {} (job {})", staged.messageCount(), roomId, job.getId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Failed to re-cluster room {} (job {})", roomId, job.getId(), e);
+            synchronized (job) {
+                job.getFailedRooms().add(roomId);
+            }
+            checkpoint(job);
+        }
+    }
+
+    /**
+     * Labels the room's messages in keyset-paged chunks without writing anything. Messages are
+     * grouped by topic key as they are labelled, and for every old cluster only a count per new
+     * topic is kept, so the staged state holds one id per message and nothing else.
+     */
+    private StagedRoom label(String roomId, Instant from, Instant to) throws InterruptedException {
+        int chunkSize = clusteringConfig.getBackfill().getChunkSize();
+        StagedRoom staged = new StagedRoom(new HashMap<>(), new HashMap<>(), new HashMap<>());
+        List<Message> chunk = messageRepository
+            .findByRoomIdAndCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAtAscIdAsc(
+                roomId, from, to, PageRequest.of(0, chunkSize));
+        while (!chunk.isEmpty()) {
+            Map<UUID, String> labelled = labelWithRetry(roomId, chunk);
+            for (Message message : chunk) {
+                String topic = labelled.get(message.getId());
+                String key = topic == null ? "" : topicCanonicalizer.canonicalize(roomId, topic);
+                if (key.isBlank()) {
+                    continue;
+                }
+                staged.displayTopicByKey().putIfAbsent(key, topic.trim());
+                staged.idsByKey().computeIfAbsent(key, ignored -> new ArrayList<>()).add(message.getId());
+                if (message.getClusterId() != null) {
+                    staged.keysByOldCluster().computeIfAbsent(message.getClusterId(), ignored -> new HashMap<>())
+                        .merge(key, 1, Integer::sum);
+                }
+            }
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            Message last = chunk.get(chunk.size() - 1);
+            chunk = messageRepository.findByRoomIdAfterBefore(
+                roomId, last.getCreatedAt(), last.getId(), to, PageRequest.of(0, chunkSize));
+        }
+        return staged;
+    }
+
+    /**
+     * Gemini answers rate limits and errors with an empty result; back off and try again before
+     * giving up on the room.
+     */
+    private Map<UUID, String> labelWithRetry(String roomId, List<Message> chunk) throws InterruptedException {
+        ClusteringConfig.Backfill settings = clusteringConfig.getBackfill();
+        long backoffMs = settings.getRetryBackoffMs();
+        for (int attempt = 0; ; attempt++) {
+            throttle();
+            Map<UUID, String> labelled = topicClustererService.labelTopics(roomId, chunk);
+            if (!labelled.isEmpty()) {
+                return labelled;
+            }
+            if (attempt >= settings.getLabelRetries()) {
+                throw new IllegalStateException("No topics returned after message " + chunk.get(0).getId()
+                    + " in " + (attempt + 1) + " attempts");
+            }
+            log.warn("No topics returned for room {}; retrying in {} ms", roomId, backoffMs);
+            Thread.sleep(backoffMs);
+            backoffMs = Math.min(backoffMs * 2, settings.getMaxRetryBackoffMs());
+        }
+    }
+
+    /**
+     * Writes a staged room in the caller's transaction: one new cluster per topic, then old
+     * clusters that lost all their messages hand their votes to the new cluster that took most
+     * of their members, and partially emptied ones get a fresh count.
+     */
+    private void apply(String roomId, StagedRoom staged) {
+        Map<String, UUID> clusterByKey = new HashMap<>();
+        for (Map.Entry<String, List<UUID>> entry : staged.idsByKey().entrySet()) {
+            String topic = staged.displayTopicByKey().get(entry.getKey());
+            List<UUID> ids = entry.getValue();
+            Cluster cluster = new Cluster();
+            cluster.setRoomId(roomId);
+            cluster.setTitle(topic);
+            cluster.setKeywords(topic);
+            cluster.setMessageCount(ids.size());
+            cluster = clusterRepository.save(cluster);
+            clusterByKey.put(entry.getKey(), cluster.getId());
+
+            for (int start = 0; start < ids.size(); start += UPDATE_BATCH_SIZE) {
+                List<UUID> batch = ids.subList(start, Math.min(ids.size(), start + UPDATE_BATCH_SIZE));
+                messageRepository.assignCluster(cluster.getId(), batch);
+            }
+        }
+
+        for (Map.Entry<UUID, Map<String, Integer>> entry : staged.keysByOldCluster().entrySet()) {
+            Optional<Cluster> old = clusterRepository.findById(entry.getKey());
+            if (old.isEmpty()) {
+                continue;
+            }
+            long remaining = messageRepository.countByClusterId(entry.getKey());
+            if (remaining > 0) {
+                old.get().setMessageCount((int) remaining);
+                clusterRepository.save(old.get());
+                continue;
+            }
+            String successorKey = entry.getValue().entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElseThrow();
+            clusterRepository.findById(clusterByKey.get(successorKey))
+                .ifPresent(target -> clusterMergeService.merge(old.get(), target));
+        }
+    }
+
+    private void throttle() throws InterruptedException {
+        double maxRequestsPerSecond = clusteringConfig.getBackfill().getMaxRequestsPerSecond();
+        if (maxRequestsPerSecond <= 0) {
+            // Unthrottled
+            return;
+        }
+        long intervalMs = (long) Math.ceil(1000.0 / maxRequestsPerSecond);
+        long waitMs;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long slot = Math.max(now, nextRequestAt);
+            nextRequestAt = slot + intervalMs;
+            waitMs = slot - now;
+        }
+        if (waitMs > 0) {
+            Thread.sleep(waitMs);
+        }
+    }
+
+    private void checkpoint(ReclusterJob job) {
+        Path dir = Path.of(clusteringConfig.getBackfill().getCheckpointDir());
+        try {
+            Files.createDirectories(dir);
+            Path file = dir.resolve(job.getId() + ".json");
+            Path temp = dir.resolve(job.getId() + ".json.tmp");
+            synchronized (job) {
+                job.setUpdatedAt(System.currentTimeMillis());
+                objectMapper.writeValue(temp.toFile(), job);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.error("Failed to checkpoint re-cluster job {}", job.getId(), e);
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(clusteringConfig.getBackfill().getParallelism());
+        }
+        return executor;
+    }
+}
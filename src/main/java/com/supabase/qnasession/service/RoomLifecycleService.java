@@ -0,0 +1,113 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which rooms are active. A room becomes active on realtime activity or ingest and is
+ * demoted to idle after a quiet period. Idle rooms still get clustered when they have
+ * unclustered messages, but their in-memory state is first in line for eviction. A periodic
+ * sweep sums the per-room state reported by every {@link RoomStateHolder} and evicts idle
+ * rooms, least recently active first, until the total fits the configured budget.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RoomLifecycleService {
+
+    private final ClusteringConfig clusteringConfig;
+    private final List<RoomStateHolder> holders;
+
+    private final Map<String, Long> lastActivity = new ConcurrentHashMap<>();
+
+    public void touch(String roomId) {
+        if (roomId != null && !roomId.isBlank()) {
+            lastActivity.put(roomId, System.currentTimeMillis());
+        }
+    }
+
+    public boolean isActive(String roomId) {
+        Long last = lastActivity.get(roomId);
+        return last != null && System.currentTimeMillis() - last < clusteringConfig.getLifecycle().getIdleAfterMs();
+    }
+
+    public Set<String> activeRooms() {
+        Set<String> active = new HashSet<>();
+        for (String roomId : lastActivity.keySet()) {
+            if (isActive(roomId)) {
+                active.add(roomId);
+            }
+        }
+        return active;
+    }
+
+    @Scheduled(
+        fixedDelayString = "${clustering.lifecycle.sweep-interval-ms:60000}",
+        initialDelayString = "${clustering.lifecycle.sweep-interval-ms:60000}"
+    )
+    public void sweep() {
+        ClusteringConfig.Lifecycle settings = clusteringConfig.getLifecycle();
+        Set<String> roomsWithState = new HashSet<>();
+        for (RoomStateHolder holder : holders) {
+            roomsWithState.addAll(holder.roomIds());
+        }
+
+        Map<String, Long> bytesByRoom = new HashMap<>();
+        long total = 0;
+        for (String roomId : roomsWithState) {
+            long bytes = 0;
+            for (RoomStateHolder holder : holders) {
+                bytes += holder.estimatedBytes(roomId);
+            }
+            bytesByRoom.put(roomId, bytes);
+            total += bytes;
+        }
+
+        // Idle rooms with nothing left in memory need no bookkeeping either
+        lastActivity.keySet().removeIf(roomId -> !isActive(roomId) && !roomsWithState.contains(roomId));
+
+        int evicted = 0;
+        long freed = 0;
+        if (total > settings.getMemoryBudgetBytes()) {
+            List<String> idle = new ArrayList<>();
+            for (String roomId : roomsWithState) {
+                if (!isActive(roomId)) {
+                    idle.add(roomId);
+                }
+            }
+            idle.sort(Comparator.comparingLong(roomId -> lastActivity.getOrDefault(roomId, 0L)));
+            for (String roomId : idle) {
+                if (total - freed <= settings.getMemoryBudgetBytes()) {
+                    break;
+                }
+                for (RoomStateHolder holder : holders) {
+                    holder.evictRoom(roomId);
+                }
+                lastActivity.remove(roomId);
+                freed += bytesByRoom.get(roomId);
+                evicted++;
+            }
+        }
+
+        if (evicted > 0) {
+            log.info("Evicted {} idle rooms ({} KiB); {} rooms hold {} KiB of state",
+                evicted, freed / 1024, roomsWithState.size() - evicted, (total - freed) / 1024);
+        }
+        if (total - freed > settings.getMemoryBudgetBytes()) {
+            log.warn("Active rooms alone hold {} KiB of state, over the {} KiB budget",
+                (total - freed) / 1024, settings.getMemoryBudgetBytes() / 1024);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.supabase.qnasession.service;
+
+import java.util.Set;
+
+/**
+ * A component that keeps in-memory state per room which can be dropped and rebuilt from the
+ * database on demand. {@link RoomLifecycleService} uses it to account for and evict idle rooms.
+ */
+public interface RoomStateHolder {
+
+    Set<String> roomIds();
+
+    /**
+     * Rough heap footprint of the state held for a room, in bytes.
+     */
+    long estimatedBytes(String roomId);
+
+    void evictRoom(String roomId);
+}
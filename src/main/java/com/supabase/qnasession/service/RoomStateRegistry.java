@@ -0,0 +1,282 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import com.supabase.qnasession.repository.ClusterRepository;
+import com.supabase.qnasession.repository.MessageRepository;
+import com.supabase.qnasession.repository.RoomClusterStamp;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Derived per-room state kept between clustering cycles: the topic-key to cluster index of each
+ * room, the set of rooms known to have unclustered messages, and the last realtime commit seen.
+ * The state is written as a compact binary snapshot on graceful shutdown and restored on startup,
+ * after checking each room against the cluster count and last update time in the database, so a
+ * rolling restart does not have to rebuild every room's topic-key index. The first cycle after a
+ * restore still runs a full scan for rooms with unclustered messages.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RoomStateRegistry implements RoomStateHolder {
+
+    private static final int MAGIC = 0x514E5253;
+    // Version 2: keys produced by TopicCanonicalizer; version 3: sorted terms, C++/C# spelled out
+    private static final int VERSION = 3;
+
+    private final ClusteringConfig clusteringConfig;
+    private final ClusterRepository clusterRepository;
+    private final MessageRepository messageRepository;
+
+    private final Map<String, Map<String, UUID>> clusterKeysByRoom = new ConcurrentHashMap<>();
+    private final Set<String> pendingRooms = ConcurrentHashMap.newKeySet();
+    private volatile Instant lastCommitTimestamp;
+    private volatile long lastFullScanAt;
+
+    @PostConstruct
+    public void restore() {
+        ClusteringConfig.Snapshot settings = clusteringConfig.getSnapshot();
+        Path path = Path.of(settings.getPath());
+        if (!settings.isEnabled() || !Files.exists(path)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Ignoring room state snapshot {} with unknown format", path);
+                return;
+            }
+            long savedAt = in.readLong();
+            long commitMillis = in.readLong();
+            Instant restoredCommit = commitMillis < 0 ? null : Instant.ofEpochMilli(commitMillis);
+
+            Set<String> restoredPending = new HashSet<>();
+            int pendingCount = in.readInt();
+            for (int i = 0; i < pendingCount; i++) {
+                restoredPending.add(in.readUTF());
+            }
+
+            Map<String, RoomClusterStamp> stamps = new HashMap<>();
+            for (RoomClusterStamp stamp : clusterRepository.findRoomStamps()) {
+                stamps.put(stamp.getRoomId(), stamp);
+            }
+
+            int roomCount = in.readInt();
+            int kept = 0;
+            for (int r = 0; r < roomCount; r++) {
+                String roomId = in.readUTF();
+                long clusterCount = in.readLong();
+                long lastUpdated = in.readLong();
+                int keyCount = in.readInt();
+                Map<String, UUID> keys = new ConcurrentHashMap<>();
+                for (int k = 0; k < keyCount; k++) {
+                    keys.put(in.readUTF(), new UUID(in.readLong(), in.readLong()));
+                }
+                if (matches(stamps.get(roomId), clusterCount, lastUpdated)) {
+                    clusterKeysByRoom.put(roomId, keys);
+                    kept++;
+                }
+            }
+
+            pendingRooms.addAll(restoredPending);
+            if (restoredCommit != null) {
+                // Anything written while we were down has not been seen over realtime
+                pendingRooms.addAll(messageRepository.findRoomIdsWithUnclusteredSince(restoredCommit));
+                lastCommitTimestamp = restoredCommit;
+            }
+            // lastFullScanAt stays 0: rooms drained by a cycle still running at shutdown are in
+            // neither set above, and the first full scan picks them up
+            log.info("Restored room state snapshot from {} ({} of {} rooms valid, {} pending rooms)",
+                Instant.ofEpochMilli(savedAt), kept, roomCount, pendingRooms.size());
+        } catch (Exception e) {
+            log.warn("Failed to restore room state snapshot {}; starting cold", path, e);
+            clusterKeysByRoom.clear();
+            pendingRooms.clear();
+            lastCommitTimestamp = null;
+            lastFullScanAt = 0;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void writeSnapshot() {
+        ClusteringConfig.Snapshot settings = clusteringConfig.getSnapshot();
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Path path = Path.of(settings.getPath());
+        try {
+            Map<String, RoomClusterStamp> stamps = new HashMap<>();
+            for (RoomClusterStamp stamp : clusterRepository.findRoomStamps()) {
+                stamps.put(stamp.getRoomId(), stamp);
+            }
+
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                Instant commit = lastCommitTimestamp;
+                out.writeLong(commit == null ? -1L : commit.toEpochMilli());
+
+                Set<String> pending = Set.copyOf(pendingRooms);
+                out.writeInt(pending.size());
+                for (String roomId : pending) {
+                    out.writeUTF(roomId);
+                }
+
+                Map<String, Map<String, UUID>> rooms = new HashMap<>();
+                for (Map.Entry<String, Map<String, UUID>> entry : clusterKeysByRoom.entrySet()) {
+                    if (stamps.containsKey(entry.getKey())) {
+                        rooms.put(entry.getKey(), Map.copyOf(entry.getValue()));
+                    }
+                }
+                out.writeInt(rooms.size());
+                for (Map.Entry<String, Map<String, UUID>> entry : rooms.entrySet()) {
+                    RoomClusterStamp stamp = stamps.get(entry.getKey());
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(stamp.getClusterCount());
+                    out.writeLong(stamp.getLastUpdated() == null ? -1L : stamp.getLastUpdated().toEpochMilli());
+                    out.writeInt(entry.getValue().size());
+                    for (Map.Entry<String, UUID> key : entry.getValue().entrySet()) {
+                        out.writeUTF(key.getKey());
+                        out.writeLong(key.getValue().getMostSignificantBits());
+                        out.writeLong(key.getValue().getLeastSignificantBits());
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote room state snapshot for {} rooms to {}", clusterKeysByRoom.size(), path);
+        } catch (Exception e) {
+            log.warn("Failed to write room state snapshot {}", path, e);
+        }
+    }
+
+    /**
+     * Cached topic-key index of a room, or null if the room has not been loaded yet.
+     */
+    public Map<String, UUID> clusterKeys(String roomId) {
+        return clusterKeysByRoom.get(roomId);
+    }
+
+    public void putClusterKeys(String roomId, Map<String, UUID> keys) {
+        clusterKeysByRoom.put(roomId, new ConcurrentHashMap<>(keys));
+    }
+
+    public void rememberCluster(String roomId, String topicKey, UUID clusterId) {
+        Map<String, UUID> keys = clusterKeysByRoom.get(roomId);
+        if (keys != null) {
+            keys.put(topicKey, clusterId);
+        }
+    }
+
+    /**
+     * Points every topic key of a merged cluster, and the given key of its title, at the cluster
+     * it was folded into, so the next message with the old topic joins the survivor.
+     */
+    public void redirectCluster(String roomId, String sourceKey, UUID sourceId, UUID targetId) {
+        Map<String, UUID> keys = clusterKeysByRoom.get(roomId);
+        if (keys == null) {
+            return;
+        }
+        keys.replaceAll((key, clusterId) -> clusterId.equals(sourceId) ? targetId : clusterId);
+        if (sourceKey != null && !sourceKey.isBlank()) {
+            keys.put(sourceKey, targetId);
+        }
+    }
+
+    public void forgetCluster(String roomId, UUID clusterId) {
+        Map<String, UUID> keys = clusterKeysByRoom.get(roomId);
+        if (keys != null) {
+            keys.values().removeIf(clusterId::equals);
+        }
+    }
+
+    public void markPending(String roomId) {
+        if (roomId != null && !roomId.isBlank()) {
+            pendingRooms.add(roomId);
+        }
+    }
+
+    /**
+     * Removes and returns the rooms flagged as having unclustered messages by realtime inserts or
+     * earlier cycles. Callers re-mark any room they could not finish.
+     */
+    public Set<String> drainPending() {
+        Set<String> drained = new HashSet<>();
+        for (String roomId : Set.copyOf(pendingRooms)) {
+            if (pendingRooms.remove(roomId)) {
+                drained.add(roomId);
+            }
+        }
+        return drained;
+    }
+
+    public boolean isFullScanDue() {
+        return System.currentTimeMillis() - lastFullScanAt >= clusteringConfig.getFullScanIntervalMs();
+    }
+
+    public void markFullScan() {
+        lastFullScanAt = System.currentTimeMillis();
+    }
+
+    public void noteCommit(Instant commitTimestamp) {
+        Instant current = lastCommitTimestamp;
+        if (commitTimestamp != null && (current == null || commitTimestamp.isAfter(current))) {
+            lastCommitTimestamp = commitTimestamp;
+        }
+    }
+
+    @Override
+    public Set<String> roomIds() {
+        return Set.copyOf(clusterKeysByRoom.keySet());
+    }
+
+    @Override
+    public long estimatedBytes(String roomId) {
+        Map<String, UUID> keys = clusterKeysByRoom.get(roomId);
+        if (keys == null) {
+            return 0;
+        }
+        long bytes = 128;
+        for (String key : keys.keySet()) {
+            // Entry, UUID and string headers plus two bytes per char
+            bytes += 112 + 2L * key.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void evictRoom(String roomId) {
+        clusterKeysByRoom.remove(roomId);
+    }
+
+    private boolean matches(RoomClusterStamp stamp, long clusterCount, long lastUpdated) {
+        if (stamp == null) {
+            return false;
+        }
+        long dbUpdated = stamp.getLastUpdated() == null ? -1L : stamp.getLastUpdated().toEpochMilli();
+        return stamp.getClusterCount() == clusterCount && dbUpdated == lastUpdated;
+    }
+}
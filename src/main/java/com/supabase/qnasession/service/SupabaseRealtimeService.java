@@ -14,9 +14,14 @@ import org.java_websocket.handshake.ServerHandshake;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -27,9 +32,13 @@ public class SupabaseRealtimeService {
     
     private final SupabaseConfig supabaseConfig;
     private final ObjectMapper objectMapper;
+    private final RoomStateRegistry roomStateRegistry;
+    private final ClusterWriteTracker clusterWriteTracker;
     private WebSocketClient client;
     private final AtomicInteger refCounter = new AtomicInteger(0);
     private final List<RealtimeChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Join refs awaiting their phx_reply, with the topic joined
+    private final Map<String, String> pendingJoins = new ConcurrentHashMap<>();
     
     @PostConstruct
     public void connect() {
@@ -58,6 +67,8 @@ public class SupabaseRealtimeService {
                 @Override
                 public void onOpen(ServerHandshake handshakedata) {
                     log.info("WebSocket connection opened");
+                    // Joins sent on a previous connection will never be answered
+                    pendingJoins.clear();
                     subscribeToTables();
                 }
 
@@ -91,7 +102,8 @@ public class SupabaseRealtimeService {
     }
     
     private void subscribeToTables() {
-        List<String> tables = supabaseConfig.getRealtime().getTables();
+        SupabaseConfig.Realtime realtime = supabaseConfig.getRealtime();
+        List<String> tables = realtime.getTables();
         
         if (tables.isEmpty()) {
             log.warn("No tables configured for realtime subscription");
@@ -99,24 +111,54 @@ public class SupabaseRealtimeService {
         }
         
         for (String table : tables) {
-            subscribeToTable(table);
+            SupabaseConfig.Subscription subscription =
+                realtime.getSubscriptions().getOrDefault(table, new SupabaseConfig.Subscription());
+            if (subscription.isPerRoom() && !realtime.getRooms().isEmpty()) {
+                for (String roomId : realtime.getRooms()) {
+                    subscribeToTable("realtime:public:" + table + ":" + roomId, table,
+                        subscription.getEvents(), "room_id=eq." + roomId);
+                }
+            } else {
+                subscribeToTable("realtime:public:" + table, table,
+                    subscription.getEvents(), subscription.getFilter());
+            }
         }
     }
     
-    private void subscribeToTable(String table) {
+    private void subscribeToTable(String topic, String table, List<String> events, String filter) {
         try {
             String ref = String.valueOf(refCounter.incrementAndGet());
             
+            // Supabase takes one event type and one filter per postgres_changes entry. DELETE
+            // events cannot be filtered, so a filtered "*" or DELETE entry never delivers deletes;
+            // with per-room channels, deleted clusters are only noticed on the next reload.
+            if (filter != null && !filter.isBlank()
+                && events.stream().anyMatch(event -> "*".equals(event) || "DELETE".equalsIgnoreCase(event))) {
+                log.warn("Realtime cannot filter DELETE events; deletes on {} will not arrive on {}", table, topic);
+            }
+            List<Map<String, Object>> changes = new ArrayList<>();
+            for (String event : events.isEmpty() ? List.of("*") : events) {
+                Map<String, Object> change = new HashMap<>();
+                change.put("event", event.toUpperCase());
+                change.put("schema", "public");
+                change.put("table", table);
+                if (filter != null && !filter.isBlank()) {
+                    change.put("filter", filter);
+                }
+                changes.add(change);
+            }
+            
             Map<String, Object> message = new HashMap<>();
-            message.put("topic", "realtime:public:" + table);
+            message.put("topic", topic);
             message.put("event", "phx_join");
-            message.put("payload", Map.of());
+            message.put("payload", Map.of("config", Map.of("postgres_changes", changes)));
             message.put("ref", ref);
+            pendingJoins.put(ref, topic);
             
             String jsonMessage = objectMapper.writeValueAsString(message);
             client.send(jsonMessage);
             
-            log.info("Subscribed to table: {}", table);
+            log.info("Subscribed to table: {} (events {}, filter {})", table, events, filter == null ? "none" : filter);
             
         } catch (Exception e) {
             log.error("Failed to subscribe to table: {}", table, e);
@@ -131,6 +173,10 @@ public class SupabaseRealtimeService {
             // Handle heartbeat
             if ("phx_reply".equals(event)) {
                 log.debug("Received reply: {}", message);
+                String topic = pendingJoins.remove(root.path("ref").asText());
+                if (topic != null && "ok".equals(root.path("payload").path("status").asText())) {
+                    notifySubscribed(topic);
+                }
                 return;
             }
             
@@ -150,6 +196,13 @@ public class SupabaseRealtimeService {
             
             String type = data.path("type").asText(); // INSERT, UPDATE, DELETE
             String table = data.path("table").asText();
+            roomStateRegistry.noteCommit(parseCommitTimestamp(data.path("commit_timestamp").asText(null)));
+            
+            if ("clusters".equals(table) && supabaseConfig.getRealtime().isSuppressOwnWrites()
+                && clusterWriteTracker.isOwnWrite(type, data.path("record"), data.path("old_record"))) {
+                log.debug("Suppressed echo of own {} on clusters", type);
+                return;
+            }
             
             log.info("Received {} event for table: {}", type, table);
             
@@ -183,6 +236,18 @@ public class SupabaseRealtimeService {
         }
     }
     
+    private Instant parseCommitTimestamp(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant();
+        } catch (DateTimeParseException e) {
+            log.debug("Unparseable commit timestamp: {}", text);
+            return null;
+        }
+    }
+    
     public void addListener(RealtimeChangeListener listener) {
         listeners.add(listener);
     }
@@ -221,6 +286,16 @@ public class SupabaseRealtimeService {
         }
     }
     
+    private void notifySubscribed(String topic) {
+        for (RealtimeChangeListener listener : listeners) {
+            try {
+                listener.onSubscribed(topic);
+            } catch (Exception e) {
+                log.error("Error notifying listener of subscription", e);
+            }
+        }
+    }
+    
     private void scheduleReconnect() {
         new Thread(() -> {
             try {
@@ -0,0 +1,200 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.en.EnglishPossessiveFilter;
+import org.apache.lucene.analysis.en.PorterStemFilter;
+import org.apache.lucene.analysis.pattern.PatternReplaceCharFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.synonym.SynonymGraphFilter;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Maps LLM topic phrasings to a canonical cluster key: possessives stripped, lower-cased,
+ * configured synonyms applied, stop and filler words dropped, Porter-stemmed, terms sorted.
+ * "JWT tokens", "tokens for JWT" and "JWT's tokens" all become "jwt token"; "C++" and "C#" are
+ * spelled out first so they stay apart from "C". Keys are interned and memoised per room,
+ * so a topic the room has seen before costs a hash lookup.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TopicCanonicalizer implements RoomStateHolder {
+
+    private static final int MAX_INTERNED_KEYS = 100_000;
+    // Only directly after a letter or digit, so "#kubernetes" and "a + b" are left alone
+    private static final Pattern PLUS_PLUS = Pattern.compile("(?<=[\\p{L}\\p{N}])\\+\\+");
+    private static final Pattern SHARP = Pattern.compile("(?<=[\\p{L}\\p{N}])#");
+    private static final List<String> FILLER_WORDS = List.of(
+        "about", "explain", "explanation", "how", "question", "questions", "what", "why"
+    );
+
+    private final ClusteringConfig clusteringConfig;
+    private final Map<String, Map<String, String>> memoByRoom = new ConcurrentHashMap<>();
+    private final Map<String, String> interned = new ConcurrentHashMap<>();
+    private Analyzer analyzer;
+
+    @PostConstruct
+    public void init() throws IOException {
+        SynonymMap synonyms = buildSynonyms(clusteringConfig.getCanonical().getSynonyms());
+        CharArraySet stopWords = new CharArraySet(EnglishAnalyzer.ENGLISH_STOP_WORDS_SET, true);
+        stopWords.addAll(FILLER_WORDS);
+
+        analyzer = new Analyzer() {
+            @Override
+            protected Reader initReader(String fieldName, Reader reader) {
+                // The tokenizer drops symbols, which would make "C++", "C#" and "C" one topic
+                Reader spelled = new PatternReplaceCharFilter(PLUS_PLUS, "plusplus", reader);
+                return new PatternReplaceCharFilter(SHARP, "sharp", spelled);
+            }
+
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer source = new StandardTokenizer();
+                TokenStream stream = new EnglishPossessiveFilter(source);
+                stream = new LowerCaseFilter(stream);
+                if (synonyms != null) {
+                    stream = new SynonymGraphFilter(stream, synonyms, true);
+                }
+                stream = new StopFilter(stream, stopWords);
+                stream = new PorterStemFilter(stream);
+                return new TokenStreamComponents(source, stream);
+            }
+        };
+    }
+
+    @PreDestroy
+    public void close() {
+        if (analyzer != null) {
+            analyzer.close();
+        }
+    }
+
+    public String canonicalize(String roomId, String topic) {
+        if (topic == null || topic.isBlank()) {
+            return "";
+        }
+        Map<String, String> memo = memoByRoom.computeIfAbsent(roomId == null ? "" : roomId,
+            key -> new ConcurrentHashMap<>());
+        String cached = memo.get(topic);
+        if (cached != null) {
+            return cached;
+        }
+
+        String key = intern(analyze(topic));
+        if (memo.size() >= clusteringConfig.getCanonical().getMemoSizePerRoom()) {
+            memo.clear();
+        }
+        memo.put(topic, key);
+        return key;
+    }
+
+    @Override
+    public Set<String> roomIds() {
+        return Set.copyOf(memoByRoom.keySet());
+    }
+
+    @Override
+    public long estimatedBytes(String roomId) {
+        Map<String, String> memo = memoByRoom.get(roomId);
+        if (memo == null) {
+            return 0;
+        }
+        long bytes = 128;
+        for (String topic : memo.keySet()) {
+            // Keys are interned and shared, so only the raw topic is counted
+            bytes += 80 + 2L * topic.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void evictRoom(String roomId) {
+        memoByRoom.remove(roomId);
+    }
+
+    /**
+     * Analyzed terms of free text, repeats included, for callers that compare message content
+     * with the same stop words, synonyms and stemming as topic keys. Nothing is memoised.
+     */
+    public List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream("topic", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            log.warn("Failed to analyze text", e);
+        }
+        return terms;
+    }
+
+    private String analyze(String topic) {
+        // Sorted so word order does not matter: "token jwt" and "jwt token" share a key
+        Set<String> terms = new TreeSet<>(terms(topic));
+        if (terms.isEmpty()) {
+            // Topics made only of stop words ("what is this") keep their plain form
+            return topic.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        }
+        return String.join(" ", terms);
+    }
+
+    private String intern(String key) {
+        String existing = interned.putIfAbsent(key, key);
+        if (existing != null) {
+            return existing;
+        }
+        if (interned.size() > MAX_INTERNED_KEYS) {
+            interned.clear();
+        }
+        return key;
+    }
+
+    private SynonymMap buildSynonyms(Map<String, String> synonyms) throws IOException {
+        if (synonyms.isEmpty()) {
+            return null;
+        }
+        SynonymMap.Builder builder = new SynonymMap.Builder(true);
+        for (Map.Entry<String, String> entry : synonyms.entrySet()) {
+            CharsRef input = SynonymMap.Builder.join(words(entry.getKey()), new CharsRefBuilder());
+            CharsRef output = SynonymMap.Builder.join(words(entry.getValue()), new CharsRefBuilder());
+            builder.add(input, output, false);
+        }
+        return builder.build();
+    }
+
+    private String[] words(String phrase) {
+        return phrase.trim().toLowerCase(Locale.ROOT).split("\\s+");
+    }
+}
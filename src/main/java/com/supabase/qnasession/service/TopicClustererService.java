@@ -2,12 +2,15 @@ package com.supabase.qnasession.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supabase.qnasession.config.ClusteringConfig;
 import com.supabase.qnasession.models.Message;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -20,8 +23,22 @@ public class TopicClustererService {
 
     private final GeminiClient geminiClient;
     private final ObjectMapper objectMapper;
+    private final ClusteringConfig clusteringConfig;
+    private final AssignmentJournal assignmentJournal;
 
     public Map<UUID, String> clusterTopics(String roomId, List<Message> messages) {
+        Map<UUID, String> assignments = labelTopics(roomId, messages);
+        if (!assignments.isEmpty()) {
+            assignmentJournal.append(UUID.randomUUID(), Map.of(roomId, assignments));
+        }
+        return assignments;
+    }
+
+    /**
+     * Labels messages without journaling the result, for callers that apply assignments
+     * outside the clustering cycle.
+     */
+    public Map<UUID, String> labelTopics(String roomId, List<Message> messages) {
         if (messages.isEmpty()) {
             return Map.of();
         }
@@ -41,23 +58,142 @@ public class TopicClustererService {
         return parseAssignments(json);
     }
 
+    /**
+     * Labels the pending messages of several rooms. Large rooms get a request of their own;
+     * small rooms are packed together into shared requests up to the configured token budget
+     * and the room-tagged assignments are split back out per room.
+     */
+    public Map<String, Map<UUID, String>> clusterTopics(Map<String, List<Message>> messagesByRoom) {
+        ClusteringConfig.Packing packing = clusteringConfig.getPacking();
+        Map<String, Map<UUID, String>> results = new LinkedHashMap<>();
+        List<Map<String, List<Message>>> packs = new ArrayList<>();
+        Map<String, List<Message>> currentPack = new LinkedHashMap<>();
+        int currentTokens = estimateTokens(instructions(true));
+
+        for (Map.Entry<String, List<Message>> entry : messagesByRoom.entrySet()) {
+            String roomId = entry.getKey();
+            List<Message> messages = entry.getValue();
+            if (messages.isEmpty()) {
+                continue;
+            }
+            if (!packing.isEnabled() || messages.size() > packing.getSmallRoomMaxMessages()) {
+                results.put(roomId, clusterTopics(roomId, messages));
+                continue;
+            }
+
+            int roomTokens = estimateTokens(roomSection(roomId, messages));
+            if (!currentPack.isEmpty() && currentTokens + roomTokens > packing.getMaxPromptTokens()) {
+                packs.add(currentPack);
+                currentPack = new LinkedHashMap<>();
+                currentTokens = estimateTokens(instructions(true));
+            }
+            currentPack.put(roomId, messages);
+            currentTokens += roomTokens;
+        }
+        if (!currentPack.isEmpty()) {
+            packs.add(currentPack);
+        }
+
+        for (Map<String, List<Message>> pack : packs) {
+            if (pack.size() == 1) {
+                Map.Entry<String, List<Message>> only = pack.entrySet().iterator().next();
+                results.put(only.getKey(), clusterTopics(only.getKey(), only.getValue()));
+            } else {
+                results.putAll(clusterPacked(pack));
+            }
+        }
+        return results;
+    }
+
+    private Map<String, Map<UUID, String>> clusterPacked(Map<String, List<Message>> pack) {
+        Map<UUID, String> roomByMessageId = new HashMap<>();
+        Map<String, Map<UUID, String>> results = new LinkedHashMap<>();
+        StringBuilder prompt = new StringBuilder(instructions(true));
+        for (Map.Entry<String, List<Message>> entry : pack.entrySet()) {
+            results.put(entry.getKey(), new HashMap<>());
+            prompt.append(roomSection(entry.getKey(), entry.getValue()));
+            for (Message message : entry.getValue()) {
+                roomByMessageId.put(message.getId(), entry.getKey());
+            }
+        }
+
+        log.info("Packing {} messages from {} rooms into one Gemini request", roomByMessageId.size(), pack.size());
+        Optional<String> response = geminiClient.generateText(prompt.toString());
+        if (response.isEmpty()) {
+            return results;
+        }
+        String json = extractJson(response.get());
+        if (json == null) {
+            log.warn("Gemini response did not contain JSON for packed rooms {}", pack.keySet());
+            return results;
+        }
+
+        for (Map.Entry<UUID, RoomTopic> assignment : parseRoomAssignments(json).entrySet()) {
+            String roomId = roomByMessageId.get(assignment.getKey());
+            if (roomId == null) {
+                continue;
+            }
+            String taggedRoom = assignment.getValue().roomId();
+            if (taggedRoom != null && !taggedRoom.equals(roomId)) {
+                log.debug("Gemini tagged message {} with room {} but it belongs to {}",
+                    assignment.getKey(), taggedRoom, roomId);
+            }
+            results.get(roomId).put(assignment.getKey(), assignment.getValue().topic());
+        }
+        assignmentJournal.append(UUID.randomUUID(), results);
+        return results;
+    }
+
     private String buildPrompt(String roomId, List<Message> messages) {
+        return instructions(false) + roomSection(roomId, messages);
+    }
+
+    private String instructions(boolean roomTagged) {
         StringBuilder builder = new StringBuilder();
         builder.append("You are clustering Q&A messages into topics.\n");
         builder.append("Return ONLY JSON array (no markdown) with objects: ");
-        builder.append("{\"message_id\":\"<uuid>\",\"topic\":\"<short noun phrase>\"}.\n");
+        if (roomTagged) {
+            builder.append("{\"room_id\":\"<room>\",\"message_id\":\"<uuid>\",\"topic\":\"<short noun phrase>\"}.\n");
+        } else {
+            builder.append("{\"message_id\":\"<uuid>\",\"topic\":\"<short noun phrase>\"}.\n");
+        }
         builder.append("Rules:\n");
         builder.append("- Topic should be 1-3 words.\n");
         builder.append("- Keep proper nouns (e.g., RagJN).\n");
         builder.append("- Remove filler words like explain, about, what is, how to.\n");
         builder.append("- If unclear, use \"general\".\n");
+        if (roomTagged) {
+            builder.append("- Rooms are independent; cluster each room's messages separately.\n");
+        }
+        return builder.toString();
+    }
+
+    private String roomSection(String roomId, List<Message> messages) {
+        StringBuilder builder = new StringBuilder();
         builder.append("Room: ").append(roomId).append("\n");
         builder.append("Messages:\n");
+        appendMessages(builder, messages);
+        return builder.toString();
+    }
+
+    private void appendMessages(StringBuilder builder, List<Message> messages) {
         for (Message message : messages) {
             builder.append("- id: ").append(message.getId())
                 .append(" content: ").append(message.getContent()).append("\n");
         }
-        return builder.toString();
+    }
+
+    private int estimateTokens(String text) {
+        return text.length() / 4 + 1;
+    }
+
+    /**
+     * Rough prompt cost of one message line, used to budget LLM capacity before prompts are built.
+     */
+    public int estimateTokens(Message message) {
+        int contentLength = message.getContent() == null ? 0 : message.getContent().length();
+        // "- id: <uuid> content: " plus the trailing newline
+        return (contentLength + 52) / 4 + 1;
     }
 
     private String extractJson(String text) {
@@ -75,6 +211,14 @@ public class TopicClustererService {
 
     private Map<UUID, String> parseAssignments(String json) {
         Map<UUID, String> results = new HashMap<>();
+        for (Map.Entry<UUID, RoomTopic> entry : parseRoomAssignments(json).entrySet()) {
+            results.put(entry.getKey(), entry.getValue().topic());
+        }
+        return results;
+    }
+
+    private Map<UUID, RoomTopic> parseRoomAssignments(String json) {
+        Map<UUID, RoomTopic> results = new HashMap<>();
         try {
             JsonNode root = objectMapper.readTree(json);
             if (!root.isArray()) {
@@ -88,7 +232,7 @@ public class TopicClustererService {
                 }
                 try {
                     UUID id = UUID.fromString(idText);
-                    results.put(id, topic.trim());
+                    results.put(id, new RoomTopic(node.path("room_id").asText(null), topic.trim()));
                 } catch (IllegalArgumentException ignored) {
                     // ignore invalid UUIDs
                 }
@@ -98,4 +242,7 @@ public class TopicClustererService {
         }
         return results;
     }
+
+    private record RoomTopic(String roomId, String topic) {
+    }
 }
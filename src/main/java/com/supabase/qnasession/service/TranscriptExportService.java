@@ -0,0 +1,198 @@
+package com.supabase.qnasession.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supabase.qnasession.config.ExportConfig;
+import com.supabase.qnasession.models.Cluster;
+import com.supabase.qnasession.repository.ClusterRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams a room's transcript to an output stream. Messages are read through a server-side
+ * cursor in fetch-size chunks (PostgreSQL only uses one with auto-commit off), so memory stays
+ * flat regardless of room size. Cluster titles and votes come from a map loaded once per export.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TranscriptExportService {
+
+    private static final String QUERY = "select id, user_id, user_name, content, created_at, votes, cluster_id "
+        + "from messages where room_id = ? order by created_at, id";
+    private static final String CSV_HEADER =
+        "message_id,created_at,user_id,user_name,content,votes,cluster_id,cluster_title,cluster_votes\n";
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private record ClusterInfo(String title, int votes) {
+    }
+
+    private final DataSource dataSource;
+    private final ClusterRepository clusterRepository;
+    private final ObjectMapper objectMapper;
+    private final ExportConfig exportConfig;
+
+    private Semaphore slots;
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(Math.max(1, exportConfig.getMaxConcurrent()));
+    }
+
+    /**
+     * Reserves one of the {@code export.max-concurrent} slots; callers release it with
+     * {@link #releaseSlot()} once the response has been written.
+     */
+    public boolean tryAcquireSlot() {
+        return slots.tryAcquire();
+    }
+
+    public void releaseSlot() {
+        slots.release();
+    }
+
+    public long export(String roomId, Format format, OutputStream out) throws IOException, SQLException {
+        Map<UUID, ClusterInfo> clusters = new HashMap<>();
+        for (Cluster cluster : clusterRepository.findByRoomId(roomId)) {
+            clusters.put(cluster.getId(), new ClusterInfo(cluster.getTitle(),
+                cluster.getVotes() == null ? 0 : cluster.getVotes()));
+        }
+
+        long started = System.nanoTime();
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        JsonGenerator json = null;
+        if (format == Format.NDJSON) {
+            json = objectMapper.getFactory().createGenerator(writer);
+            // Lines are separated by the newline written after each row, not Jackson's default space
+            json.setRootValueSeparator(null);
+        }
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement statement = connection.prepareStatement(
+                QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(exportConfig.getFetchSize());
+                statement.setString(1, roomId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        UUID clusterId = resultSet.getObject("cluster_id", UUID.class);
+                        ClusterInfo cluster = clusterId == null ? null : clusters.get(clusterId);
+                        if (json != null) {
+                            writeJson(json, resultSet, clusterId, cluster);
+                        } else {
+                            writeCsv(writer, resultSet, clusterId, cluster);
+                        }
+                        rows++;
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setReadOnly(false);
+                connection.setAutoCommit(true);
+            }
+        }
+
+        if (json != null) {
+            json.flush();
+        }
+        writer.flush();
+        log.info("Exported {} messages for room {} as {} in {} ms",
+            rows, roomId, format, (System.nanoTime() - started) / 1_000_000);
+        return rows;
+    }
+
+    private void writeJson(JsonGenerator json, ResultSet row, UUID clusterId, ClusterInfo cluster)
+        throws SQLException, IOException {
+        Timestamp createdAt = row.getTimestamp("created_at");
+        json.writeStartObject();
+        json.writeStringField("message_id", row.getString("id"));
+        json.writeStringField("created_at", createdAt == null ? null : createdAt.toInstant().toString());
+        json.writeStringField("user_id", row.getString("user_id"));
+        json.writeStringField("user_name", row.getString("user_name"));
+        json.writeStringField("content", row.getString("content"));
+        json.writeNumberField("votes", row.getInt("votes"));
+        json.writeStringField("cluster_id", clusterId == null ? null : clusterId.toString());
+        json.writeStringField("cluster_title", cluster == null ? null : cluster.title());
+        if (cluster == null) {
+            json.writeNullField("cluster_votes");
+        } else {
+            json.writeNumberField("cluster_votes", cluster.votes());
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private void writeCsv(Writer writer, ResultSet row, UUID clusterId, ClusterInfo cluster)
+        throws SQLException, IOException {
+        Timestamp createdAt = row.getTimestamp("created_at");
+        writer.write(row.getString("id"));
+        writer.write(',');
+        writer.write(createdAt == null ? "" : createdAt.toInstant().toString());
+        writer.write(',');
+        writeCsvField(writer, row.getString("user_id"));
+        writer.write(',');
+        writeCsvField(writer, row.getString("user_name"));
+        writer.write(',');
+        writeCsvField(writer, row.getString("content"));
+        writer.write(',');
+        writer.write(Integer.toString(row.getInt("votes")));
+        writer.write(',');
+        writer.write(clusterId == null ? "" : clusterId.toString());
+        writer.write(',');
+        writeCsvField(writer, cluster == null ? null : cluster.title());
+        writer.write(',');
+        writer.write(cluster == null ? "" : Integer.toString(cluster.votes()));
+        writer.write('\n');
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') {
+                writer.write('"');
+            }
+            writer.write(ch);
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,142 @@
+package com.supabase.qnasession.service;
+
+import com.supabase.qnasession.config.ClusteringConfig;
+import com.supabase.qnasession.models.Message;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares the per-cycle LLM token budget between rooms with start-time fair queuing.
+ * Each room's unlabelled messages form a queue; the message with the smallest virtual
+ * start tag is admitted next, so a room with a large backlog cannot starve quiet rooms.
+ * Weights come from explicit room configuration and recent activity, and every room is
+ * additionally capped by its own tokens-per-minute bucket. Messages that are not admitted
+ * stay unclustered and are picked up again on the next cycle.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class WeightedFairScheduler implements RoomStateHolder {
+
+    private final ClusteringConfig clusteringConfig;
+    private final TopicClustererService topicClustererService;
+    private final Map<String, RoomShare> shares = new ConcurrentHashMap<>();
+    private double virtualTime;
+
+    public synchronized Map<String, List<Message>> allocate(Map<String, List<Message>> queuesByRoom) {
+        ClusteringConfig.Fairness fairness = clusteringConfig.getFairness();
+        if (!fairness.isEnabled() || queuesByRoom.isEmpty()) {
+            return queuesByRoom;
+        }
+
+        long now = System.currentTimeMillis();
+        PriorityQueue<RoomCursor> ready = new PriorityQueue<>(Comparator.comparingDouble(RoomCursor::startTag));
+        for (Map.Entry<String, List<Message>> entry : queuesByRoom.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            RoomShare share = shares.computeIfAbsent(entry.getKey(), key -> new RoomShare(fairness.getRoomTokensPerMinute(), now));
+            share.refill(fairness.getRoomTokensPerMinute(), now);
+            double weight = weight(entry.getKey(), entry.getValue(), now);
+            ready.add(new RoomCursor(entry.getKey(), entry.getValue(), share, weight, 0,
+                Math.max(virtualTime, share.lastFinish)));
+        }
+
+        Map<String, List<Message>> admitted = new LinkedHashMap<>();
+        int remaining = fairness.getMaxTokensPerCycle();
+        while (!ready.isEmpty() && remaining > 0) {
+            RoomCursor cursor = ready.poll();
+            Message message = cursor.queue().get(cursor.index());
+            int cost = topicClustererService.estimateTokens(message);
+            if (cost > remaining || !cursor.share().tryConsume(cost, fairness.getRoomTokensPerMinute())) {
+                // Out of global or per-room budget; the rest of this room waits for the next cycle
+                continue;
+            }
+
+            remaining -= cost;
+            virtualTime = cursor.startTag();
+            double finishTag = cursor.startTag() + cost / cursor.weight();
+            cursor.share().lastFinish = finishTag;
+            admitted.computeIfAbsent(cursor.roomId(), key -> new ArrayList<>()).add(message);
+
+            int next = cursor.index() + 1;
+            if (next < cursor.queue().size()) {
+                ready.add(new RoomCursor(cursor.roomId(), cursor.queue(), cursor.share(), cursor.weight(), next, finishTag));
+            }
+        }
+
+        int total = queuesByRoom.values().stream().mapToInt(List::size).sum();
+        int granted = admitted.values().stream().mapToInt(List::size).sum();
+        if (granted < total) {
+            log.info("Fair scheduler admitted {} of {} unlabelled messages across {} rooms this cycle",
+                granted, total, queuesByRoom.size());
+        }
+        return admitted;
+    }
+
+    @Override
+    public Set<String> roomIds() {
+        return Set.copyOf(shares.keySet());
+    }
+
+    @Override
+    public long estimatedBytes(String roomId) {
+        return shares.containsKey(roomId) ? 96 : 0;
+    }
+
+    @Override
+    public void evictRoom(String roomId) {
+        shares.remove(roomId);
+    }
+
+    private double weight(String roomId, List<Message> queue, long now) {
+        ClusteringConfig.Fairness fairness = clusteringConfig.getFairness();
+        double weight = fairness.getRoomWeights().getOrDefault(roomId, 1.0);
+        Instant newest = queue.get(queue.size() - 1).getCreatedAt();
+        if (newest != null && now - newest.toEpochMilli() <= fairness.getActiveWindowMs()) {
+            weight *= fairness.getActiveBoost();
+        }
+        return weight > 0 ? weight : 1.0;
+    }
+
+    private record RoomCursor(String roomId, List<Message> queue, RoomShare share, double weight,
+                              int index, double startTag) {
+    }
+
+    private static final class RoomShare {
+
+        private double tokens;
+        private long refilledAt;
+        private double lastFinish;
+
+        RoomShare(int capacity, long now) {
+            tokens = capacity;
+            refilledAt = now;
+        }
+
+        void refill(int capacity, long now) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * capacity / 60000.0);
+            refilledAt = now;
+        }
+
+        boolean tryConsume(int cost, int capacity) {
+            // A full bucket always admits one message so oversized messages cannot wedge a room
+            if (tokens < cost && tokens < capacity) {
+                return false;
+            }
+            tokens -= cost;
+            return true;
+        }
+    }
+}